@@ -0,0 +1,117 @@
+package com.yandex.diplom_2;
+
+import io.restassured.builder.ResponseBuilder;
+import io.restassured.http.ContentType;
+import io.restassured.response.Response;
+import io.restassured.specification.RequestSpecification;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpHeaders;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.oneOf;
+
+/**
+ * What one request of the suite costs on the client, replayed against a canned
+ * {@code /api/orders/all} body ({@code orders-all.json}, 50 orders from the stand-in) instead of the network.
+ * Run with {@code mvn -Pjmh test}; {@code -prof gc} adds the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClientPipelineBenchmark {
+    private static final String TOKEN = "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.e30.c2lnbmF0dXJl";
+    private static final List<String> BURGER = List.of(
+            "61c0c5a71d1f82001bdaaa6d", "61c0c5a71d1f82001bdaaa6f", "61c0c5a71d1f82001bdaaa72");
+
+    private byte[] ordersAll;
+    private Response orders;
+
+    @Setup
+    public void setup() {
+        try (var in = ClientPipelineBenchmark.class.getResourceAsStream("/orders-all.json")) {
+            ordersAll = in.readAllBytes();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        orders = cannedResponse();
+    }
+
+    @Benchmark
+    public RequestSpecification specification() {
+        return given().contentType(ContentType.JSON)
+                .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .body(new JSONObject().put("ingredients", BURGER).toString());
+    }
+
+    @Benchmark
+    public RequestSpecification endpointSpecification() {
+        return given(ApiSpecs.ORDERS)
+                .header(HttpHeaders.AUTHORIZATION, TOKEN)
+                .body(BodyTemplate.ORDER.fill(BURGER));
+    }
+
+    @Benchmark
+    public byte[] jsonObjectBody() {
+        return new JSONObject().put("ingredients", BURGER).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] templateBody() {
+        return BodyTemplate.ORDER.fill(BURGER);
+    }
+
+    /**
+     * A fresh response each time, the parsed document is cached inside a response.
+     */
+    @Benchmark
+    public List<Integer> jsonPathGetList() {
+        return cannedResponse().jsonPath().getList("orders.number");
+    }
+
+    @Benchmark
+    public Object matcherChain() {
+        return cannedResponse().then().assertThat().statusCode(200)
+                .body("success", oneOf(true),
+                        "orders.number", everyItem(greaterThan(0)),
+                        "orders.status", everyItem(oneOf("done", "preparing", "cancelled")),
+                        "orders.updatedAt", everyItem(notNullValue()));
+    }
+
+    @Benchmark
+    public long streamingValidator() {
+        return OrdersFeedValidator.validate(new ByteArrayInputStream(ordersAll)).orders();
+    }
+
+    /**
+     * The already parsed response, to separate parsing from evaluating the path.
+     */
+    @Benchmark
+    public List<Integer> jsonPathGetListParsed() {
+        return orders.jsonPath().getList("orders.number");
+    }
+
+    private Response cannedResponse() {
+        return new ResponseBuilder()
+                .setStatusCode(200)
+                .setContentType(ContentType.JSON)
+                .setBody(ordersAll)
+                .build();
+    }
+}
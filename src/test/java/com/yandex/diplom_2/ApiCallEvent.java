@@ -0,0 +1,31 @@
+package com.yandex.diplom_2;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP call made through RestAssured, committed by {@link JfrFilter}; its duration is the event duration.
+ */
+@Name("com.yandex.diplom_2.ApiCall")
+@Label("API Call")
+@Category("Stellar Burgers")
+@StackTrace(false)
+public class ApiCallEvent extends Event {
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Request Size")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Size")
+    @DataAmount
+    public long responseBytes;
+}
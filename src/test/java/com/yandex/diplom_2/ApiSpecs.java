@@ -0,0 +1,34 @@
+package com.yandex.diplom_2;
+
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.http.ContentType;
+import io.restassured.specification.RequestSpecification;
+
+/**
+ * Request specifications built once per endpoint and shared by all threads. They are only ever
+ * merged into a new request with {@code given(spec)}, never changed, so sharing them is safe.
+ * Target, filters and the {@link ConnectionPool} come from the RestAssured defaults set in
+ * {@link BaseTest#configureTarget()}.
+ */
+public final class ApiSpecs {
+    public static final RequestSpecification REGISTER = endpoint("/api/auth/register");
+    public static final RequestSpecification LOGIN = endpoint("/api/auth/login");
+    public static final RequestSpecification LOGOUT = endpoint("/api/auth/logout");
+    public static final RequestSpecification TOKEN = endpoint("/api/auth/token");
+    public static final RequestSpecification PASSWORD_RESET = endpoint("/api/password-reset");
+    public static final RequestSpecification PASSWORD_RESET_CONFIRM = endpoint("/api/password-reset/reset");
+    public static final RequestSpecification USER = endpoint("/api/auth/user");
+    public static final RequestSpecification ORDERS = endpoint("/api/orders");
+    public static final RequestSpecification ORDERS_ALL = endpoint("/api/orders/all");
+    public static final RequestSpecification INGREDIENTS = endpoint("/api/ingredients");
+
+    private ApiSpecs() {
+    }
+
+    private static RequestSpecification endpoint(String path) {
+        return new RequestSpecBuilder()
+                .setContentType(ContentType.JSON)
+                .setBasePath(path)
+                .build();
+    }
+}
@@ -0,0 +1,28 @@
+package com.yandex.diplom_2;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Time spent in one of the {@code assertResponse*} helpers of {@link BaseTest}.
+ */
+@Name("com.yandex.diplom_2.Assertion")
+@Label("Response Assertion")
+@Category("Stellar Burgers")
+@StackTrace(false)
+public class AssertionEvent extends Event {
+    @Label("Helper")
+    public String helper;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("Expected")
+    public String expected;
+
+    @Label("Passed")
+    public boolean passed;
+}
@@ -0,0 +1,162 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.apache.http.HttpHeaders;
+import org.json.JSONObject;
+
+/**
+ * Non-blocking counterpart of the {@link BaseTest} helpers on the JDK {@link HttpClient}: no thread waits
+ * for a response, so one JVM can keep thousands of requests in flight. Bodies are the same
+ * {@link JSONObject}s and {@link BodyTemplate}s the blocking helpers take. Every call is recorded
+ * in {@link LatencyRegistry} under the same endpoint names as {@link LatencyFilter} uses.
+ *
+ * <pre>
+ * client.register(identity.toJson())
+ *         .thenCompose(user -&gt; client.orderCreate(burger, user.path("accessToken"))
+ *                 .thenCompose(order -&gt; client.userDelete(user.path("accessToken"))));
+ * </pre>
+ */
+public class AsyncApiClient {
+    private final HttpClient http;
+    private final URI base;
+
+    public AsyncApiClient(URI base) {
+        this.base = base;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Client for the target RestAssured was pointed at by {@link BaseTest#configureTarget()}.
+     */
+    public static AsyncApiClient forConfiguredTarget() {
+        return new AsyncApiClient(URI.create(RestAssured.baseURI + ":" + RestAssured.port));
+    }
+
+    public CompletableFuture<AsyncResponse> register(JSONObject body) {
+        return send("POST", "/api/auth/register", null, body);
+    }
+
+    public CompletableFuture<AsyncResponse> register(BodyTemplate body, Object... values) {
+        return send("POST", "/api/auth/register", null, body.fill(values));
+    }
+
+    public CompletableFuture<AsyncResponse> login(JSONObject body) {
+        return send("POST", "/api/auth/login", null, body);
+    }
+
+    public CompletableFuture<AsyncResponse> logout(String refreshToken) {
+        return send("POST", "/api/auth/logout", null, BodyTemplate.token(refreshToken));
+    }
+
+    public CompletableFuture<AsyncResponse> tokenRefresh(String refreshToken) {
+        return send("POST", "/api/auth/token", null, BodyTemplate.token(refreshToken));
+    }
+
+    public CompletableFuture<AsyncResponse> passwordResetRequest(JSONObject body) {
+        return send("POST", "/api/password-reset", null, body);
+    }
+
+    public CompletableFuture<AsyncResponse> passwordReset(JSONObject body) {
+        return send("POST", "/api/password-reset/reset", null, body);
+    }
+
+    public CompletableFuture<AsyncResponse> userGet(String token) {
+        return send("GET", "/api/auth/user", token, (byte[]) null);
+    }
+
+    public CompletableFuture<AsyncResponse> userUpdate(JSONObject body, String token) {
+        return send("PATCH", "/api/auth/user", token, body);
+    }
+
+    public CompletableFuture<AsyncResponse> userDelete(String token) {
+        return send("DELETE", "/api/auth/user", token, (byte[]) null);
+    }
+
+    public CompletableFuture<AsyncResponse> ordersAll() {
+        return send("GET", "/api/orders/all", null, (byte[]) null);
+    }
+
+    public CompletableFuture<AsyncResponse> orders(String token) {
+        return send("GET", "/api/orders", token, (byte[]) null);
+    }
+
+    public CompletableFuture<AsyncResponse> ingredients() {
+        return send("GET", "/api/ingredients", null, (byte[]) null);
+    }
+
+    public CompletableFuture<AsyncResponse> orderCreate(JSONObject body, String token) {
+        return send("POST", "/api/orders", token, body);
+    }
+
+    public CompletableFuture<AsyncResponse> orderCreate(BodyTemplate body, String token, Object... values) {
+        return send("POST", "/api/orders", token, body.fill(values));
+    }
+
+    private CompletableFuture<AsyncResponse> send(String method, String path, String token, JSONObject body) {
+        return send(method, path, token, body == null ? null : body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Any request with the body as it is, e.g. a malformed one; {@code token} and {@code body} may be {@code null}.
+     */
+    public CompletableFuture<AsyncResponse> send(String method, String path, String token, byte[] body) {
+        var request = HttpRequest.newBuilder(base.resolve(path))
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+        if (token != null) {
+            request.header(HttpHeaders.AUTHORIZATION, token);
+        }
+        var endpoint = method + " " + path;
+        var start = System.nanoTime();
+        return http.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> LatencyRegistry.record(endpoint, System.nanoTime() - start))
+                .thenApply(response -> new AsyncResponse(response.statusCode(), response.body()));
+    }
+
+    /**
+     * Status and body of a completed call, the body parsed on first access.
+     */
+    public static class AsyncResponse {
+        private final int statusCode;
+        private final String body;
+        private JSONObject json;
+
+        AsyncResponse(int statusCode, String body) {
+            this.statusCode = statusCode;
+            this.body = body;
+        }
+
+        public int statusCode() {
+            return statusCode;
+        }
+
+        public String body() {
+            return body;
+        }
+
+        public synchronized JSONObject json() {
+            if (json == null) {
+                json = body == null || body.isEmpty() ? new JSONObject() : new JSONObject(body);
+            }
+            return json;
+        }
+
+        /**
+         * Value at a dotted path such as {@code "order.number"}, {@code null} when there is none.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T path(String path) {
+            return (T) json().optQuery("/" + path.replace('.', '/'));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.yandex.diplom_2;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The register, order, orders, delete iteration of {@link LoadRunner} on the {@link AsyncApiClient}:
+ * up to {@code async.inFlight} iterations (default 1000) run at once without a thread each,
+ * {@code async.iterations} (default 5000) in total. An iteration fails when any of its requests does.
+ * Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.AsyncLoadRunner}.
+ */
+public class AsyncLoadRunner {
+    private final AsyncApiClient client;
+    private final LoadStats stats = new LoadStats();
+    private final AtomicInteger peak = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder failedIterations = new LongAdder();
+
+    public AsyncLoadRunner(AsyncApiClient client) {
+        this.client = client;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        BaseTest.configureTarget();
+        try {
+            var runner = new AsyncLoadRunner(AsyncApiClient.forConfiguredTarget());
+            var start = System.currentTimeMillis();
+            runner.run(Integer.getInteger("async.iterations", 5000), Integer.getInteger("async.inFlight", 1000));
+            var elapsed = System.currentTimeMillis() - start;
+            System.out.print(runner.stats.report(elapsed));
+            System.out.print(LatencyRegistry.toText());
+            System.out.printf("peak requests in flight: %d, failed iterations: %d%n", runner.peak.get(),
+                    runner.failedIterations());
+        }
+        finally {
+            StandInServer.stopInstance();
+        }
+    }
+
+    public LoadStats stats() {
+        return stats;
+    }
+
+    public long failedIterations() {
+        return failedIterations.sum();
+    }
+
+    public void run(int iterations, int maxInFlight) throws InterruptedException {
+        var burger = IngredientCatalog.get().randomBurger();
+        var slots = new Semaphore(maxInFlight);
+        for (int i = 0; i < iterations; i++) {
+            slots.acquire();
+            iteration(burger).whenComplete((ok, failure) -> {
+                if (failure != null || !ok) {
+                    failedIterations.increment();
+                }
+                slots.release();
+            });
+        }
+        if (!slots.tryAcquire(maxInFlight, 1, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Iterations still running after a minute");
+        }
+    }
+
+    /**
+     * Registers a user, orders the burger, reads the orders and deletes the user whatever happened before.
+     */
+    public CompletableFuture<Boolean> iteration(List<String> burger) {
+        var user = UserIdentity.next();
+        return call("POST /api/auth/register", c -> c.register(BodyTemplate.USER, user.email, user.name, user.password))
+                .thenCompose(created -> {
+                    if (created.statusCode() != 200) {
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    String token = created.path("accessToken");
+                    return call("POST /api/orders", c -> c.orderCreate(BodyTemplate.ORDER, token, burger))
+                            .thenCompose(order -> call("GET /api/orders", c -> c.orders(token))
+                                    .thenApply(orders -> order.statusCode() < 400 && orders.statusCode() < 400))
+                            .handle((ok, failure) -> failure == null && ok)
+                            .thenCompose(ok -> call("DELETE /api/auth/user", c -> c.userDelete(token))
+                                    .handle((deleted, failure) -> ok && failure == null && deleted.statusCode() < 400));
+                });
+    }
+
+    private CompletableFuture<AsyncApiClient.AsyncResponse> call(String endpoint,
+            Function<AsyncApiClient, CompletableFuture<AsyncApiClient.AsyncResponse>> request) {
+        peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return request.apply(client).whenComplete((response, failure) -> {
+            inFlight.decrementAndGet();
+            stats.record(endpoint, failure == null && response.statusCode() < 400);
+        });
+    }
+}
@@ -1,24 +1,35 @@
 package com.yandex.diplom_2;
 
+import io.qameta.allure.Allure;
 import io.qameta.allure.Step;
 import io.restassured.RestAssured;
-import io.restassured.filter.log.RequestLoggingFilter;
-import io.restassured.filter.log.ResponseLoggingFilter;
-import io.restassured.http.ContentType;
 import io.restassured.response.Response;
-import jdk.jfr.StackTrace;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.HdrHistogram.Histogram;
 import org.apache.http.HttpHeaders;
 import org.hamcrest.Matcher;
 import org.json.JSONObject;
 import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
 
 public class BaseTest {
-    public static final String USER_NAME = "stellarking123321";
-    public static final String USER_EMAIL = USER_NAME +"@ya.ru";
-    public static final String USER_PASSWORD = USER_NAME;
+    /**
+     * {@code -Dstellar.target=remote} runs against the real host, any other
+     * {@code http(s)://} value against that address, {@code replay:<base>} against a
+     * {@link ReplayServer} serving the recording at {@code <base>},
+     * by default the in-process {@link StandInServer} is used.
+     */
+    public static final String TARGET_PROPERTY = "stellar.target";
+    public static final String REMOTE_URI = "https://stellarburgers.nomoreparties.site/";
 
     public static final Matcher<Integer> BAD_REQUEST_403 = equalTo(403);
     public static final Matcher<Integer> BAD_REQUEST_400 = equalTo(400);
@@ -30,124 +41,288 @@ public class BaseTest {
 
     public static final Matcher<Integer> ERR_500 = equalTo(500);
 
+    private static boolean configured;
+
+    @Rule
+    public final TestWatcher exchangeLog = new TestWatcher() {
+        @Override
+        protected void starting(Description description) {
+            ExchangeLogFilter.clear();
+        }
+
+        @Override
+        protected void failed(Throwable e, Description description) {
+            ExchangeLogFilter.dump(description.getDisplayName());
+        }
+    };
+
+    /**
+     * Runs once per JVM, test classes may start concurrently.
+     */
     @BeforeClass
-    public static void setup() {
-        RestAssured.baseURI = "https://stellarburgers.nomoreparties.site/";
-        RestAssured.port = 443;
+    public static synchronized void setup() {
+        if (configured) {
+            return;
+        }
+        configureTarget();
 
-        RestAssured.filters(new RequestLoggingFilter(), new ResponseLoggingFilter());
+        //timing filters go last so that logging is not timed
+        RestAssured.filters(new ExchangeLogFilter(), new JfrFilter(), new LatencyFilter());
+        configured = true;
+    }
+
+    /**
+     * Points RestAssured at the host selected by {@link #TARGET_PROPERTY} through the shared
+     * {@link ConnectionPool}, without installing any filters other than the pool's own
+     * and the {@link CaptureFilter} when {@code -Dcapture.file} is set. With {@code -Dproxy.faults}
+     * the target is reached through a {@link FaultProxy}.
+     */
+    public static void configureTarget() {
+        ConnectionPool.install();
+        CaptureFilter.install();
+        var target = System.getProperty(TARGET_PROPERTY, "local");
+        if ("remote".equals(target)) {
+            RestAssured.baseURI = REMOTE_URI;
+            RestAssured.port = 443;
+        }
+        else if (target.startsWith("http")) {
+            var uri = URI.create(target);
+            RestAssured.baseURI = uri.getScheme() + "://" + uri.getHost();
+            RestAssured.port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+        }
+        else if (target.startsWith("replay:")) {
+            var replay = ReplayServer.instance(Paths.get(target.substring("replay:".length())));
+            RestAssured.baseURI = replay.baseUri();
+            RestAssured.port = replay.port();
+        }
+        else {
+            var stand = StandInServer.instance();
+            RestAssured.baseURI = stand.baseUri();
+            RestAssured.port = stand.port();
+        }
+        FaultProxy.install();
     }
 
     @Step
     public Response tryUserCreate(JSONObject body) {
-        var rq = given().contentType(ContentType.JSON);
+        var rq = given(ApiSpecs.REGISTER);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.post("/api/auth/register");
+        return rq.post();
+    }
+
+    /**
+     * Same as {@link #tryUserCreate(JSONObject)} with a pre-encoded body, e.g.
+     * {@code tryUserCreate(BodyTemplate.USER, email, name, password)}.
+     */
+    @Step
+    public Response tryUserCreate(BodyTemplate body, Object... values) {
+        return given(ApiSpecs.REGISTER)
+                .body(body.fill(values))
+                .post();
     }
 
     @Step
     public Response tryUserLogin(JSONObject body) {
-        var rq = given().contentType(ContentType.JSON);
+        var rq = given(ApiSpecs.LOGIN);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.post("/api/auth/login");
+        return rq.post();
+    }
+
+    @Step
+    public Response tryUserLogin(BodyTemplate body, Object... values) {
+        return given(ApiSpecs.LOGIN)
+                .body(body.fill(values))
+                .post();
     }
 
     @Step
     public Response tryUserLogout(String refreshToken) {
-        return given().contentType(ContentType.JSON)
-                .body(new JSONObject().put("token", refreshToken).toString())
-                .post("/api/auth/logout");
+        return given(ApiSpecs.LOGOUT)
+                .body(BodyTemplate.token(refreshToken))
+                .post();
+    }
+
+    @Step
+    public Response tryTokenRefresh(String refreshToken) {
+        return given(ApiSpecs.TOKEN)
+                .body(BodyTemplate.token(refreshToken))
+                .post();
     }
 
     @Step
     public Response tryUserPasswordResetRequest(JSONObject body) {
-        var rq = given().contentType(ContentType.JSON);
+        var rq = given(ApiSpecs.PASSWORD_RESET);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.post("/api/password-reset");
+        return rq.post();
     }
 
     @Step
     public Response tryUserPasswordReset(JSONObject body) {
-        var rq = given().contentType(ContentType.JSON);
+        var rq = given(ApiSpecs.PASSWORD_RESET_CONFIRM);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.post("/api/password-reset/reset");
+        return rq.post();
     }
 
     @Step
     public Response tryUserGetInfo(String token) {
-        return given().contentType(ContentType.JSON)
+        return ReadPolicy.read("GET /api/auth/user", () -> given(ApiSpecs.USER)
                 .header(HttpHeaders.AUTHORIZATION, token)
-                .get("/api/auth/user");
+                .get());
     }
 
     @Step
     public Response tryUserUpdate(JSONObject body, String token) {
-        var rq = given().contentType(ContentType.JSON)
+        var rq = given(ApiSpecs.USER)
                 .header(HttpHeaders.AUTHORIZATION, token);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.patch("/api/auth/user");
+        return rq.patch();
+    }
+
+    @Step
+    public Response tryUserUpdate(BodyTemplate body, String token, Object... values) {
+        return given(ApiSpecs.USER)
+                .header(HttpHeaders.AUTHORIZATION, token)
+                .body(body.fill(values))
+                .patch();
     }
 
     @Step
     public Response tryUserDelete(String token) {
-        return given().contentType(ContentType.JSON)
+        return given(ApiSpecs.USER)
                 .header(HttpHeaders.AUTHORIZATION, token)
-                .delete("/api/auth/user");
+                .delete();
     }
 
     @Step
     public void assertResponseWithCodeAndMessage(Response response, Matcher<Integer> code, String message, boolean success) {
-        response.then().assertThat().statusCode(code)
-                .body("message", equalTo(message),
-                        "success", equalTo(success));
+        recordAssertion("assertResponseWithCodeAndMessage", response, code, () ->
+                response.then().assertThat().statusCode(code)
+                        .body("message", equalTo(message),
+                                "success", equalTo(success)));
     }
 
     @Step
     public void assertResponse(Response response, Matcher<Integer> code, String field, Matcher<?> matcher, Object... other) {
-        response.then().assertThat().statusCode(code).body(field, matcher, other);
+        recordAssertion("assertResponse", response, code, () ->
+                response.then().assertThat().statusCode(code).body(field, matcher, other));
     }
 
     @Step
     public void assertResponse(Response response, Matcher<Integer> code) {
-        response.then().assertThat().statusCode(code);
+        recordAssertion("assertResponse", response, code, () ->
+                response.then().assertThat().statusCode(code));
+    }
+
+    /**
+     * Repeats {@code call} {@link LatencyBudget#samples()} times after {@link LatencyBudget#warmup()}
+     * uncounted calls, checks every status and the {@link LatencyBudget#percentile()} of the samples
+     * against the budget of {@code endpoint}.
+     */
+    @Step
+    public void assertLatencyPercentile(String endpoint, Matcher<Integer> code, Supplier<Response> call) {
+        for (int i = 0; i < LatencyBudget.warmup(); i++) {
+            call.get();
+        }
+        var histogram = LatencyRegistry.newHistogram();
+        for (int i = 0; i < LatencyBudget.samples(); i++) {
+            var response = call.get();
+            assertResponse(response, code);
+            histogram.recordValue(response.getTimeIn(TimeUnit.MICROSECONDS));
+        }
+        assertLatency(endpoint, histogram, LatencyBudget.percentile());
+    }
+
+    /**
+     * On a breach the measured distribution is attached to the current step before failing.
+     */
+    private static void assertLatency(String endpoint, Histogram histogram, double percentile) {
+        var budget = LatencyBudget.millis(endpoint);
+        var measured = TimeUnit.MICROSECONDS.toMillis(histogram.getValueAtPercentile(percentile));
+        if (measured > budget) {
+            var message = String.format("%s p%s %d ms exceeds the budget of %d ms over %d samples",
+                    endpoint, BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString(), measured, budget, histogram.getTotalCount());
+            Allure.addAttachment("Latency distribution", "application/json",
+                    LatencyRegistry.summary(histogram).put("budget", budget).toString(2));
+            throw new AssertionError(message);
+        }
+    }
+
+    /**
+     * Runs the assertion inside an {@link AssertionEvent}, a no-op wrapper unless a JFR recording is running.
+     */
+    private static void recordAssertion(String helper, Response response, Matcher<Integer> code, Runnable assertion) {
+        var event = new AssertionEvent();
+        event.begin();
+        try {
+            assertion.run();
+            event.passed = true;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.helper = helper;
+                event.statusCode = response.statusCode();
+                event.expected = code.toString();
+                event.commit();
+            }
+        }
     }
 
     @Step
     public Response tryOrdersGetAll() {
-        return given().contentType(ContentType.JSON)
-                .get("/api/orders/all");
+        return ReadPolicy.read("GET /api/orders/all", () -> given(ApiSpecs.ORDERS_ALL)
+                .get());
     }
 
     @Step
     public Response tryOrdersGet(String token) {
-        return given().contentType(ContentType.JSON)
+        return ReadPolicy.read("GET /api/orders", () -> given(ApiSpecs.ORDERS)
                 .header(HttpHeaders.AUTHORIZATION, token)
-                .get("/api/orders");
+                .get());
     }
 
     @Step
     public Response tryGetIngredients() {
-        return given().contentType(ContentType.JSON)
-                .get("/api/ingredients");
+        return ReadPolicy.read("GET /api/ingredients", () -> given(ApiSpecs.INGREDIENTS)
+                .get());
+    }
+
+    @Step
+    public Response tryGetIngredients(String etag) {
+        return ReadPolicy.read("GET /api/ingredients", () -> given(ApiSpecs.INGREDIENTS)
+                .header(HttpHeaders.IF_NONE_MATCH, etag)
+                .get());
     }
 
     @Step
     public Response tryOrderCreate(JSONObject body, String token) {
-        var rq = given().contentType(ContentType.JSON)
+        var rq = given(ApiSpecs.ORDERS)
                 .header(HttpHeaders.AUTHORIZATION, token);
         if (body != null) {
             rq = rq.body(body.toString());
         }
-        return rq.post("/api/orders");
+        return rq.post();
+    }
+
+    /**
+     * Same as {@link #tryOrderCreate(JSONObject, String)} with a pre-encoded body, e.g.
+     * {@code tryOrderCreate(BodyTemplate.ORDER, token, ingredientIds)}.
+     */
+    @Step
+    public Response tryOrderCreate(BodyTemplate body, String token, Object... values) {
+        return given(ApiSpecs.ORDERS)
+                .header(HttpHeaders.AUTHORIZATION, token)
+                .body(body.fill(values))
+                .post();
     }
 }
@@ -0,0 +1,177 @@
+package com.yandex.diplom_2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A JSON request body whose constant parts are encoded to UTF-8 once. {@code {{slot}}} marks a
+ * value filled in per request: a {@link String} becomes a quoted JSON string, a {@link Collection}
+ * a JSON array of strings, a {@link Number} or {@link Boolean} is written as is, {@code null} as {@code null}.
+ * Strings are encoded like {@code String.getBytes(UTF_8)}, a lone surrogate becomes {@code ?}.
+ *
+ * <p>{@link #fill(Object...)} writes straight into a per-thread buffer that is reused between requests,
+ * the only allocation is the resulting array, which RestAssured sends without encoding it again.
+ */
+public class BodyTemplate {
+    private static final Pattern SLOT = Pattern.compile("\\{\\{(\\w+)}}");
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] EMPTY = "{}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    public static final BodyTemplate USER = compile("{\"email\":{{email}},\"name\":{{name}},\"password\":{{password}}}");
+    public static final BodyTemplate CREDENTIALS = compile("{\"email\":{{email}},\"password\":{{password}}}");
+    public static final BodyTemplate TOKEN = compile("{\"token\":{{token}}}");
+    public static final BodyTemplate ORDER = compile("{\"ingredients\":{{ingredients}}}");
+
+    private final byte[][] constants;
+    private final List<String> slots;
+
+    private BodyTemplate(byte[][] constants, List<String> slots) {
+        this.constants = constants;
+        this.slots = slots;
+    }
+
+    public static BodyTemplate compile(String template) {
+        var constants = new ArrayList<byte[]>();
+        var slots = new ArrayList<String>();
+        var matcher = SLOT.matcher(template);
+        var end = 0;
+        while (matcher.find()) {
+            constants.add(template.substring(end, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            slots.add(matcher.group(1));
+            end = matcher.end();
+        }
+        constants.add(template.substring(end).getBytes(StandardCharsets.UTF_8));
+        return new BodyTemplate(constants.toArray(new byte[0][]), List.copyOf(slots));
+    }
+
+    /**
+     * {@link #TOKEN} for logout and token refresh, {@code {}} without a token: the field is left out
+     * rather than sent as {@code null}, as the requests without a token have always been sent.
+     */
+    public static byte[] token(String refreshToken) {
+        return refreshToken == null ? EMPTY.clone() : TOKEN.fill(refreshToken);
+    }
+
+    /**
+     * Slot names in the order {@link #fill(Object...)} expects the values.
+     */
+    public List<String> slots() {
+        return slots;
+    }
+
+    public byte[] fill(Object... values) {
+        if (values.length != slots.size()) {
+            throw new IllegalArgumentException("Expected values for " + slots + ", got " + values.length);
+        }
+        var buffer = BUFFER.get();
+        buffer.size = 0;
+        for (int i = 0; i < values.length; i++) {
+            buffer.write(constants[i]);
+            value(buffer, values[i]);
+        }
+        buffer.write(constants[values.length]);
+        return Arrays.copyOf(buffer.bytes, buffer.size);
+    }
+
+    private static void value(Buffer buffer, Object value) {
+        if (value == null) {
+            buffer.write(NULL);
+        }
+        else if (value instanceof CharSequence) {
+            string(buffer, (CharSequence) value);
+        }
+        else if (value instanceof Collection) {
+            buffer.write('[');
+            var first = true;
+            for (var item : (Collection<?>) value) {
+                if (!first) {
+                    buffer.write(',');
+                }
+                first = false;
+                value(buffer, item);
+            }
+            buffer.write(']');
+        }
+        else if (value instanceof Number || value instanceof Boolean) {
+            ascii(buffer, value.toString());
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported template value " + value.getClass().getName());
+        }
+    }
+
+    private static void string(Buffer buffer, CharSequence s) {
+        buffer.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            var c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                buffer.write('\\');
+                buffer.write(c);
+            }
+            else if (c < 0x20) {
+                buffer.write('\\');
+                buffer.write('u');
+                buffer.write('0');
+                buffer.write('0');
+                buffer.write(HEX[c >> 4]);
+                buffer.write(HEX[c & 0xf]);
+            }
+            else if (c < 0x80) {
+                buffer.write(c);
+            }
+            else if (c < 0x800) {
+                buffer.write(0xc0 | c >> 6);
+                buffer.write(0x80 | c & 0x3f);
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                var cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.write(0xf0 | cp >> 18);
+                buffer.write(0x80 | cp >> 12 & 0x3f);
+                buffer.write(0x80 | cp >> 6 & 0x3f);
+                buffer.write(0x80 | cp & 0x3f);
+            }
+            else if (Character.isSurrogate(c)) {
+                //a lone surrogate has no UTF-8 form, replaced like String.getBytes does
+                buffer.write('?');
+            }
+            else {
+                buffer.write(0xe0 | c >> 12);
+                buffer.write(0x80 | c >> 6 & 0x3f);
+                buffer.write(0x80 | c & 0x3f);
+            }
+        }
+        buffer.write('"');
+    }
+
+    private static void ascii(Buffer buffer, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            buffer.write(s.charAt(i));
+        }
+    }
+
+    private static class Buffer {
+        byte[] bytes = new byte[512];
+        int size;
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            if (size + b.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + b.length));
+            }
+            System.arraycopy(b, 0, bytes, size, b.length);
+            size += b.length;
+        }
+    }
+}
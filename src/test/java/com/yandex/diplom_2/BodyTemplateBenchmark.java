@@ -0,0 +1,73 @@
+package com.yandex.diplom_2;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+
+/**
+ * Bytes allocated by the calling thread per request body and per whole {@code tryOrderCreate} call,
+ * {@link JSONObject} against {@link BodyTemplate}. The JSON string is encoded the way RestAssured
+ * does it, so both sides end with the bytes that go on the wire.
+ * Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.BodyTemplateBenchmark}.
+ */
+public class BodyTemplateBenchmark {
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) {
+        var bodies = Integer.getInteger("bench.bodies", 200_000);
+        var calls = Integer.getInteger("bench.calls", 500);
+        BaseTest.configureTarget();
+        try {
+            var api = new BaseTest();
+            var burger = IngredientCatalog.get().randomBurger();
+            var user = UserIdentity.next();
+            System.out.printf("%-34s %12s %10s%n", "operation", "bytes/op", "ns/op");
+            measure("order body, JSONObject", bodies, () ->
+                    new JSONObject().put("ingredients", burger).toString().getBytes(StandardCharsets.UTF_8));
+            measure("order body, BodyTemplate", bodies, () -> BodyTemplate.ORDER.fill(burger));
+            measure("register body, JSONObject", bodies, () ->
+                    user.toJson().toString().getBytes(StandardCharsets.UTF_8));
+            measure("register body, BodyTemplate", bodies, () ->
+                    BodyTemplate.USER.fill(user.email, user.name, user.password));
+
+            var created = api.tryUserCreate(BodyTemplate.USER, user.email, user.name, user.password);
+            String token = created.path("accessToken");
+            try {
+                measure("tryOrderCreate, JSONObject", calls, () ->
+                        api.tryOrderCreate(new JSONObject().put("ingredients", burger), token));
+                measure("tryOrderCreate, BodyTemplate", calls, () ->
+                        api.tryOrderCreate(BodyTemplate.ORDER, token, burger));
+            }
+            finally {
+                api.tryUserDelete(token);
+            }
+        }
+        finally {
+            StandInServer.stopInstance();
+        }
+    }
+
+    /**
+     * Runs {@code operations} warm-up calls, then the same number measured.
+     */
+    static void measure(String name, int operations, Supplier<?> operation) {
+        Object sink = null;
+        for (int i = 0; i < operations; i++) {
+            sink = operation.get();
+        }
+        var thread = Thread.currentThread().getId();
+        var bytes = THREADS.getThreadAllocatedBytes(thread);
+        var start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            sink = operation.get();
+        }
+        var nanos = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%-34s %12d %10d%n", name, bytes / operations, nanos / operations);
+        if (sink == null) {
+            throw new IllegalStateException();
+        }
+    }
+}
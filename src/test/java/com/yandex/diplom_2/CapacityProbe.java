@@ -0,0 +1,230 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.HdrHistogram.Recorder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Finds the highest throughput each endpoint sustains within its latency budget.
+ * Concurrency is adjusted once per window. A window is healthy while its p99 stays within
+ * {@link LatencyBudget#millis(String)} and no 5xx or 429 came back. Like TCP slow start the limit
+ * doubles after every healthy window until the first unhealthy one, from then on it follows AIMD:
+ * one more in-flight request after a healthy window, halved after an unhealthy one.
+ * The best healthy window is the knee of the throughput/latency curve; when it is at
+ * {@code capacity.maxConcurrency} the knee lies beyond it and the result is only a lower bound.
+ *
+ * <p>Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.CapacityProbe}, configured with
+ * {@code capacity.windows} (per endpoint, default 20), {@code capacity.window} (milliseconds, default 1000)
+ * and {@code capacity.maxConcurrency} (default 64). Calls still running after the last window get
+ * {@code capacity.graceSeconds} (default 60) to finish before the probe gives up. The report goes to {@link #REPORT}.
+ */
+public class CapacityProbe {
+    public static final Path REPORT = Paths.get("target", "capacity.json");
+
+    private final BaseTest api = new BaseTest();
+    private final int windows;
+    private final long windowMillis;
+    private final int maxConcurrency;
+    private final long graceMillis = TimeUnit.SECONDS.toMillis(Long.getLong("capacity.graceSeconds", 60));
+
+    public CapacityProbe(int windows, long windowMillis, int maxConcurrency) {
+        this.windows = windows;
+        this.windowMillis = windowMillis;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        BaseTest.configureTarget();
+        RestAssured.filters(new JfrFilter());
+        JfrRecording.start();
+        try {
+            var probe = new CapacityProbe(Integer.getInteger("capacity.windows", 20),
+                    Long.getLong("capacity.window", 1000),
+                    Integer.getInteger("capacity.maxConcurrency", 64));
+            IngredientCatalog.get();
+            UserPool.shared();
+            var results = new ArrayList<Result>();
+            for (var flow : probe.flows().entrySet()) {
+                results.add(probe.probe(flow.getKey(), flow.getValue()));
+            }
+            System.out.print(report(results));
+            var json = new JSONObject();
+            results.forEach(r -> json.put(r.endpoint, r.toJson()));
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, json.toString(2));
+        }
+        finally {
+            JfrRecording.stop();
+            StandInServer.stopInstance();
+        }
+    }
+
+    /**
+     * The order and auth flows, each call made on behalf of a pooled user.
+     */
+    public Map<String, Function<PooledUser, Response>> flows() {
+        var flows = new LinkedHashMap<String, Function<PooledUser, Response>>();
+        flows.put("POST /api/orders", user -> api.tryOrderCreate(new JSONObject()
+                .put("ingredients", IngredientCatalog.get().randomBurger()), user.accessToken()));
+        flows.put("GET /api/orders", user -> api.tryOrdersGet(user.accessToken()));
+        flows.put("POST /api/auth/login", user -> api.tryUserLogin(user.identity.credentials()));
+        flows.put("GET /api/auth/user", user -> api.tryUserGetInfo(user.accessToken()));
+        return flows;
+    }
+
+    public Result probe(String endpoint, Function<PooledUser, Response> call) throws InterruptedException {
+        var budgetMicros = TimeUnit.MILLISECONDS.toMicros(LatencyBudget.millis(endpoint));
+        var recorder = new Recorder(LatencyRegistry.HIGHEST_TRACKABLE_MICROS, 3);
+        var overloaded = new LongAdder();
+        var result = new Result(endpoint, LatencyBudget.millis(endpoint));
+        result.maxConcurrency = maxConcurrency;
+        var limit = new AtomicInteger(1);
+        var running = new AtomicBoolean(true);
+        var slowStart = true;
+
+        var pool = Executors.newFixedThreadPool(maxConcurrency);
+        for (int i = 0; i < maxConcurrency; i++) {
+            var slot = i;
+            pool.execute(() -> {
+                PooledUser user = null;
+                try {
+                    while (running.get()) {
+                        if (slot >= limit.get()) {
+                            TimeUnit.MILLISECONDS.sleep(5);
+                            continue;
+                        }
+                        if (user == null) {
+                            user = UserPool.shared().lease();
+                        }
+                        var started = System.nanoTime();
+                        var status = status(call, user);
+                        recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started),
+                                LatencyRegistry.HIGHEST_TRACKABLE_MICROS));
+                        if (status >= 500 || status == 429 || status < 0) {
+                            overloaded.increment();
+                        }
+                    }
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finally {
+                    if (user != null) {
+                        UserPool.shared().release(user);
+                    }
+                }
+            });
+        }
+        try {
+            recorder.reset();
+            for (int w = 0; w < windows; w++) {
+                TimeUnit.MILLISECONDS.sleep(windowMillis);
+                var histogram = recorder.getIntervalHistogram();
+                var errors = overloaded.sumThenReset();
+                var rps = histogram.getTotalCount() * 1000.0 / windowMillis;
+                var p99 = histogram.getValueAtPercentile(99);
+                var healthy = errors == 0 && histogram.getTotalCount() > 0 && p99 <= budgetMicros;
+                result.window(limit.get(), rps, p99, errors, healthy);
+                slowStart &= healthy;
+                var next = !healthy ? limit.get() / 2 : slowStart ? limit.get() * 2 : limit.get() + 1;
+                limit.set(Math.max(1, Math.min(next, maxConcurrency)));
+            }
+        }
+        finally {
+            running.set(false);
+            pool.shutdown();
+        }
+        if (!pool.awaitTermination(graceMillis, TimeUnit.MILLISECONDS)) {
+            pool.shutdownNow();
+            throw new IllegalStateException(endpoint + " calls still running " + graceMillis + " ms after the last window");
+        }
+        return result;
+    }
+
+    static String report(List<Result> results) {
+        var sb = new StringBuilder(String.format("%-28s %10s %12s %10s %10s%n",
+                "endpoint", "max rps", "concurrency", "p99 ms", "budget ms"));
+        for (var r : results) {
+            sb.append(String.format("%-28s %10.1f %12s %10.3f %10d%n", r.endpoint, r.bestRps,
+                    r.bestConcurrency + (r.lowerBound() ? "+" : ""), r.bestP99Micros / 1000.0, r.budgetMillis));
+        }
+        if (results.stream().anyMatch(Result::lowerBound)) {
+            sb.append("+ healthy at capacity.maxConcurrency, raise it to find the knee\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * HTTP status, {@code -1} when the request failed without one.
+     */
+    private static int status(Function<PooledUser, Response> call, PooledUser user) {
+        try {
+            return call.apply(user).statusCode();
+        }
+        catch (Exception e) {
+            return -1;
+        }
+    }
+
+    public static class Result {
+        public final String endpoint;
+        public final long budgetMillis;
+        public double bestRps;
+        public int bestConcurrency;
+        public long bestP99Micros;
+        private final JSONArray windows = new JSONArray();
+        private int maxConcurrency;
+
+        Result(String endpoint, long budgetMillis) {
+            this.endpoint = endpoint;
+            this.budgetMillis = budgetMillis;
+        }
+
+        /**
+         * The best window ran at the concurrency cap, so the target may well sustain more.
+         */
+        public boolean lowerBound() {
+            return bestConcurrency > 0 && bestConcurrency == maxConcurrency;
+        }
+
+        void window(int concurrency, double rps, long p99Micros, long errors, boolean healthy) {
+            windows.put(new JSONObject()
+                    .put("concurrency", concurrency)
+                    .put("rps", rps)
+                    .put("p99", p99Micros / 1000.0)
+                    .put("errors", errors)
+                    .put("healthy", healthy));
+            if (healthy && rps > bestRps) {
+                bestRps = rps;
+                bestConcurrency = concurrency;
+                bestP99Micros = p99Micros;
+            }
+        }
+
+        public JSONObject toJson() {
+            return new JSONObject()
+                    .put("maxRps", bestRps)
+                    .put("concurrency", bestConcurrency)
+                    .put("p99", bestP99Micros / 1000.0)
+                    .put("budget", budgetMillis)
+                    .put("lowerBound", lowerBound())
+                    .put("windows", windows);
+        }
+    }
+}
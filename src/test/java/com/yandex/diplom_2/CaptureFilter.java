@@ -0,0 +1,61 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import org.apache.http.HttpHeaders;
+
+/**
+ * Appends every exchange to the {@link TrafficLog} named by {@code -Dcapture.file=target/traffic},
+ * keyed by {@link NormalizationRules}, for {@link ReplayServer} to serve later.
+ * Installed by {@link BaseTest#configureTarget()} when the property is set.
+ */
+public class CaptureFilter implements Filter {
+    public static final String FILE_PROPERTY = "capture.file";
+
+    private static boolean installed;
+
+    private final TrafficLog log;
+    private final NormalizationRules rules;
+
+    public CaptureFilter(TrafficLog log, NormalizationRules rules) {
+        this.log = log;
+        this.rules = rules;
+    }
+
+    public static synchronized void install() {
+        var file = System.getProperty(FILE_PROPERTY);
+        if (installed || file == null) {
+            return;
+        }
+        RestAssured.filters(new CaptureFilter(new TrafficLog(Paths.get(file)), NormalizationRules.load()));
+        installed = true;
+    }
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        var response = ctx.next(requestSpec, responseSpec);
+        var uri = URI.create(requestSpec.getURI());
+        var path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        var headers = requestSpec.getHeaders();
+        var key = rules.key(requestSpec.getMethod(), path, headers.hasHeaderWithName(HttpHeaders.AUTHORIZATION),
+                headers.hasHeaderWithName(HttpHeaders.IF_NONE_MATCH), body(requestSpec.getBody()));
+        log.append(key, response.getStatusCode(), response.getContentType(), response.getHeader(HttpHeaders.ETAG),
+                response.asByteArray());
+        return response;
+    }
+
+    private static String body(Object body) {
+        if (body == null) {
+            return null;
+        }
+        return body instanceof byte[] ? new String((byte[]) body, StandardCharsets.UTF_8) : body.toString();
+    }
+}
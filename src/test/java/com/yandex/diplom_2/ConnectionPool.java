@@ -0,0 +1,163 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import io.restassured.config.HttpClientConfig;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.client.ClientParamsStack;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * One keep-alive connection pool shared by every RestAssured call of the JVM. Without it RestAssured
+ * creates an HTTP client, and so a connection and a TLS handshake, per request.
+ *
+ * <p>Sized with {@code http.maxPerRoute} (default 64) and {@code http.maxTotal} (default 200); connections idle
+ * for {@code http.idleSeconds} (default 30) are closed by a background evictor. {@link #leases()} counts
+ * connections handed to requests, {@link #connects()} the ones that had to be opened, the rest were pool hits.
+ *
+ * <p>Connect and read timeouts are set per request from {@link EndpointTimeouts}, they take precedence
+ * over whatever RestAssured puts into the client parameters.
+ *
+ * <p>RestAssured only accepts the legacy {@link DefaultHttpClient}, hence the deprecated connection manager.
+ */
+@SuppressWarnings("deprecation")
+public class ConnectionPool {
+    private static volatile ConnectionPool shared;
+    private static boolean installed;
+
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final CountingManager manager;
+    private final ScheduledExecutorService evictor;
+
+    public ConnectionPool(int maxPerRoute, int maxTotal, long idleSeconds) {
+        manager = new CountingManager(SchemeRegistryFactory.createDefault());
+        manager.setDefaultMaxPerRoute(maxPerRoute);
+        manager.setMaxTotal(maxTotal);
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var period = Math.max(1, idleSeconds / 2);
+        evictor.scheduleAtFixedRate(() -> {
+            manager.closeExpiredConnections();
+            manager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+        }, period, period, TimeUnit.SECONDS);
+    }
+
+    public static ConnectionPool shared() {
+        var pool = shared;
+        if (pool == null) {
+            synchronized (ConnectionPool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = shared = new ConnectionPool(Integer.getInteger("http.maxPerRoute", 64),
+                            Integer.getInteger("http.maxTotal", 200),
+                            Long.getLong("http.idleSeconds", 30));
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Makes RestAssured reuse one client backed by the {@link #shared()} pool. RestAssured reads a body
+     * only when asked for it and a connection goes back to the pool only once its body has been read,
+     * so this also adds a filter reading every body.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        var pool = shared();
+        RestAssured.config = RestAssured.config().httpClient(HttpClientConfig.httpClientConfig()
+                .reuseHttpClientInstance()
+                .httpClientFactory(() -> new TimeoutClient(pool.manager)));
+        RestAssured.filters((requestSpec, responseSpec, ctx) -> {
+            var response = ctx.next(requestSpec, responseSpec);
+            response.asByteArray();
+            return response;
+        });
+        installed = true;
+    }
+
+    public long leases() {
+        return leases.sum();
+    }
+
+    public long connects() {
+        return connects.sum();
+    }
+
+    public long hits() {
+        return Math.max(0, leases() - connects());
+    }
+
+    public String report() {
+        var leased = leases();
+        return String.format("connections: %d leased, %d opened, %d reused (%.1f%%), %d pooled%n",
+                leased, connects(), hits(), leased == 0 ? 0.0 : 100.0 * hits() / leased,
+                manager.getTotalStats().getAvailable());
+    }
+
+    private static class TimeoutClient extends DefaultHttpClient {
+        TimeoutClient(ClientConnectionManager manager) {
+            super(manager);
+        }
+
+        @Override
+        protected HttpParams determineParams(HttpRequest request) {
+            var line = request.getRequestLine();
+            var endpoint = line.getMethod() + " " + URI.create(line.getUri()).getPath();
+            var timeouts = new BasicHttpParams();
+            HttpConnectionParams.setConnectionTimeout(timeouts, EndpointTimeouts.connectMillis(endpoint));
+            HttpConnectionParams.setSoTimeout(timeouts, EndpointTimeouts.readMillis(endpoint));
+            return new ClientParamsStack(null, getParams(), request.getParams(), timeouts);
+        }
+    }
+
+    private class CountingManager extends PoolingClientConnectionManager {
+        CountingManager(SchemeRegistry schemes) {
+            super(schemes);
+        }
+
+        @Override
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            leases.increment();
+            return super.requestConnection(route, state);
+        }
+
+        @Override
+        protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemes) {
+            return new DefaultClientConnectionOperator(schemes) {
+                @Override
+                public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local,
+                                           HttpContext context, HttpParams params) throws IOException {
+                    connects.increment();
+                    super.openConnection(conn, target, local, context, params);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+/**
+ * Runs the {@link LoadRunner} iteration twice through the {@link FaultProxy}, first with its
+ * rules switched off and then with them on, and compares throughput, errors and tail latency
+ * per endpoint. Both runs pay for the proxy hop, and an unmeasured pass without faults of
+ * {@code degradation.warmupSeconds} (default {@code load.duration}) takes the JIT, connection pool,
+ * user pool and target warm-up before the baseline, so the difference is down to the faults.
+ * Written to {@code target/degradation.json}. Run with
+ * {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.DegradationReport -Dproxy.faults="POST /api/orders delay=200 jitter=50"}.
+ */
+public class DegradationReport {
+    public static final Path REPORT = Paths.get("target", "degradation.json");
+
+    public static void main(String[] args) throws Exception {
+        BaseTest.configureTarget();
+        var proxy = FaultProxy.instance();
+        if (proxy == null) {
+            throw new IllegalStateException("Set -D" + FaultProxy.FAULTS_PROPERTY + " to the faults to measure");
+        }
+        RestAssured.filters(new LatencyFilter());
+        try {
+            var faults = proxy.faults();
+            proxy.faults(List.of());
+            LoadRunner.fromSystemProperties(TimeUnit.SECONDS.toMillis(Long.getLong("degradation.warmupSeconds",
+                    Long.getLong("load.duration", 10)))).run();
+            var baseline = Run.measure();
+            proxy.faults(faults);
+            proxy.resetCounters();
+            var faulted = Run.measure();
+
+            faults.forEach(f -> System.out.println("fault: " + f));
+            System.out.print(compare(baseline, faulted));
+            System.out.print(proxy.report());
+            var json = new JSONObject()
+                    .put("faults", faults.stream().map(Object::toString).toArray())
+                    .put("baseline", baseline.toJson())
+                    .put("faulted", faulted.toJson())
+                    .put("proxy", proxy.toJson());
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, json.toString(2));
+        }
+        finally {
+            //the pool teardown in stopInstance goes through the proxy
+            StandInServer.stopInstance();
+            proxy.stop();
+        }
+    }
+
+    static String compare(Run baseline, Run faulted) {
+        var sb = new StringBuilder(String.format("%-28s %17s %17s %19s %19s%n",
+                "endpoint", "req/s", "error%", "p50 ms", "p99 ms"));
+        var endpoints = new TreeSet<>(baseline.stats.endpoints());
+        endpoints.addAll(faulted.stats.endpoints());
+        for (var endpoint : endpoints) {
+            sb.append(String.format("%-28s %8.1f %8.1f %7.2f%% %7.2f%% %9.1f %9.1f %9.1f %9.1f%n", endpoint,
+                    baseline.rate(endpoint), faulted.rate(endpoint),
+                    baseline.errorPercent(endpoint), faulted.errorPercent(endpoint),
+                    baseline.millis(endpoint, 50), faulted.millis(endpoint, 50),
+                    baseline.millis(endpoint, 99), faulted.millis(endpoint, 99)));
+        }
+        sb.append(String.format("%-28s %8.1f %8.1f  (iterations/s, baseline then faulted)%n", "total",
+                baseline.total() * 1000.0 / baseline.elapsed, faulted.total() * 1000.0 / faulted.elapsed));
+        return sb.toString();
+    }
+
+    static class Run {
+        final LoadStats stats;
+        final long elapsed;
+        final Map<String, Histogram> histograms = new TreeMap<>();
+
+        Run(LoadStats stats, long elapsed) {
+            this.stats = stats;
+            this.elapsed = Math.max(elapsed, 1);
+        }
+
+        /**
+         * One {@link LoadRunner#fromSystemProperties()} run with fresh latency histograms.
+         */
+        static Run measure() throws InterruptedException {
+            LatencyRegistry.reset();
+            var runner = LoadRunner.fromSystemProperties();
+            var run = new Run(runner.stats(), runner.run());
+            LatencyRegistry.histograms().forEach((endpoint, h) -> run.histograms.put(endpoint, h.copy()));
+            return run;
+        }
+
+        double rate(String endpoint) {
+            return stats.requests(endpoint) * 1000.0 / elapsed;
+        }
+
+        double errorPercent(String endpoint) {
+            var requests = stats.requests(endpoint);
+            return requests == 0 ? 0.0 : 100.0 * stats.errors(endpoint) / requests;
+        }
+
+        double millis(String endpoint, double percentile) {
+            var h = histograms.get(endpoint);
+            return h == null ? 0.0 : h.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        /**
+         * Completed iterations, each ends with exactly one user delete.
+         */
+        long total() {
+            return stats.requests("DELETE /api/auth/user");
+        }
+
+        JSONObject toJson() {
+            var json = new JSONObject().put("elapsedMillis", elapsed);
+            for (var endpoint : stats.endpoints()) {
+                var summary = histograms.containsKey(endpoint)
+                        ? LatencyRegistry.summary(histograms.get(endpoint))
+                        : new JSONObject();
+                json.put(endpoint, summary
+                        .put("requests", stats.requests(endpoint))
+                        .put("errors", stats.errors(endpoint))
+                        .put("perSecond", rate(endpoint)));
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.yandex.diplom_2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Connect and read timeouts per endpoint from {@code timeouts.properties}, see {@link ConnectionPool}.
+ */
+public class EndpointTimeouts {
+    private static final Properties TIMEOUTS = load();
+
+    private EndpointTimeouts() {
+    }
+
+    public static int connectMillis(String endpoint) {
+        return Integer.parseInt(TIMEOUTS.getProperty("connect." + endpoint, TIMEOUTS.getProperty("connect.default")));
+    }
+
+    public static int readMillis(String endpoint) {
+        return Integer.parseInt(TIMEOUTS.getProperty("read." + endpoint, TIMEOUTS.getProperty("read.default")));
+    }
+
+    private static Properties load() {
+        var properties = new Properties();
+        try (var in = EndpointTimeouts.class.getResourceAsStream("/timeouts.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        properties.put("connect.default", System.getProperty("http.connectTimeout",
+                properties.getProperty("connect.default", "5000")));
+        properties.put("read.default", System.getProperty("http.readTimeout",
+                properties.getProperty("read.default", "30000")));
+        return properties;
+    }
+}
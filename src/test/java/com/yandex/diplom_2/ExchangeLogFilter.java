@@ -0,0 +1,112 @@
+package com.yandex.diplom_2;
+
+import io.qameta.allure.Allure;
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.http.Headers;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Keeps the last {@code log.exchanges} (default 10) request/response pairs of the current
+ * thread in a ring buffer. Only references are kept; nothing is formatted unless
+ * {@link #dump(String)} is called, which {@link BaseTest} does when a test fails.
+ */
+public class ExchangeLogFilter implements Filter {
+    public static final int CAPACITY = Integer.getInteger("log.exchanges", 10);
+
+    private static final ThreadLocal<Exchange[]> RING = ThreadLocal.withInitial(() -> new Exchange[CAPACITY]);
+    private static final ThreadLocal<long[]> WRITTEN = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        var exchange = new Exchange(requestSpec.getMethod(), requestSpec.getURI(), requestSpec.getHeaders(),
+                requestSpec.getBody());
+        add(exchange);
+        try {
+            exchange.response = ctx.next(requestSpec, responseSpec);
+            return exchange.response;
+        }
+        catch (RuntimeException e) {
+            exchange.failure = e;
+            throw e;
+        }
+    }
+
+    public static void clear() {
+        var ring = RING.get();
+        Arrays.fill(ring, null);
+        WRITTEN.get()[0] = 0;
+    }
+
+    /**
+     * Prints the buffered exchanges, oldest first, and attaches them to the current Allure test.
+     */
+    public static void dump(String title) {
+        if (CAPACITY == 0) {
+            return;
+        }
+        var text = format(title);
+        System.out.println(text);
+        Allure.addAttachment("exchanges", "text/plain", text, "txt");
+    }
+
+    /**
+     * The buffered exchanges of the current thread as {@link #dump(String)} prints them.
+     */
+    static String format(String title) {
+        var ring = RING.get();
+        var written = WRITTEN.get()[0];
+        var sb = new StringBuilder("Last ").append(Math.min(written, CAPACITY)).append(" of ")
+                .append(written).append(" exchanges of ").append(title).append('\n');
+        for (var i = Math.max(0, written - CAPACITY); i < written; i++) {
+            ring[(int) (i % CAPACITY)].format(sb);
+        }
+        return sb.toString();
+    }
+
+    private static void add(Exchange exchange) {
+        if (CAPACITY == 0) {
+            return;
+        }
+        var written = WRITTEN.get();
+        RING.get()[(int) (written[0]++ % CAPACITY)] = exchange;
+    }
+
+    private static class Exchange {
+        final String method;
+        final String uri;
+        final Headers headers;
+        final Object body;
+        Response response;
+        RuntimeException failure;
+
+        Exchange(String method, String uri, Headers headers, Object body) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        void format(StringBuilder sb) {
+            sb.append("\n> ").append(method).append(' ').append(uri).append('\n');
+            headers.forEach(h -> sb.append("> ").append(h).append('\n'));
+            if (body != null) {
+                //the templated helpers send pre-encoded UTF-8 bytes
+                sb.append(body instanceof byte[] ? new String((byte[]) body, StandardCharsets.UTF_8) : body).append('\n');
+            }
+            if (response != null) {
+                sb.append("< ").append(response.getStatusLine()).append('\n');
+                response.getHeaders().forEach(h -> sb.append("< ").append(h).append('\n'));
+                sb.append(response.getBody().asString()).append('\n');
+            }
+            else if (failure != null) {
+                sb.append("< ").append(failure).append('\n');
+            }
+        }
+    }
+}
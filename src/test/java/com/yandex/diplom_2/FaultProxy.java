@@ -0,0 +1,354 @@
+package com.yandex.diplom_2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.restassured.RestAssured;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.http.HttpHeaders;
+import org.json.JSONObject;
+
+/**
+ * Loopback HTTP proxy in front of the configured target that slows down, fails or throttles
+ * chosen endpoints. Faults come from {@code -Dproxy.faults}, either inline or {@code @file},
+ * one rule per line or separated by {@code ;}:
+ * <pre>
+ * POST /api/orders delay=200 jitter=50
+ * POST /api/auth/register error=2%
+ * GET /api/orders/all throttle=1MB
+ * * /api/auth/user delay=1000
+ * </pre>
+ * {@code delay} and {@code jitter} are milliseconds, {@code throttle} bytes per second of the
+ * response body ({@code KB}, {@code MB} suffixes). {@code *} matches any method, a lone {@code *}
+ * any endpoint; the first matching rule applies. When the property is set
+ * {@link BaseTest#configureTarget()} routes RestAssured through the proxy.
+ */
+public class FaultProxy {
+    public static final String FAULTS_PROPERTY = "proxy.faults";
+
+    private static volatile FaultProxy instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final HttpClient http;
+    private final URI upstream;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private volatile List<Fault> faults;
+
+    /**
+     * The JVM-wide proxy, {@code null} unless {@link #install()} started one.
+     */
+    public static FaultProxy instance() {
+        return instance;
+    }
+
+    /**
+     * Puts a proxy with the {@link #FAULTS_PROPERTY} rules between RestAssured and its current target.
+     */
+    public static synchronized void install() {
+        var spec = System.getProperty(FAULTS_PROPERTY);
+        if (instance != null || spec == null) {
+            return;
+        }
+        var proxy = new FaultProxy(URI.create(RestAssured.baseURI + ":" + RestAssured.port), parse(spec), 0);
+        RestAssured.baseURI = proxy.baseUri();
+        RestAssured.port = proxy.port();
+        instance = proxy;
+    }
+
+    public FaultProxy(URI upstream, List<Fault> faults, int port) {
+        this.upstream = upstream;
+        this.faults = faults;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        try {
+            server = StandInServer.bindLoopback(port);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Unable to start fault proxy", e);
+        }
+        executor = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "fault-proxy-" + server.getAddress().getPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        //the dispatcher inherits daemon status from the thread that starts it, so it never keeps the JVM alive
+        var starter = new Thread(server::start);
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted starting fault proxy", e);
+        }
+    }
+
+    /**
+     * Parses rules in the format of the class comment, {@code @path} reads them from a file.
+     */
+    public static List<Fault> parse(String spec) {
+        if (spec.startsWith("@")) {
+            try {
+                spec = Files.readString(Paths.get(spec.substring(1)));
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        var faults = new ArrayList<Fault>();
+        for (var line : spec.split("[;\\n]")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            var parts = line.split("\\s+");
+            var fault = new Fault();
+            var i = 0;
+            if ("*".equals(parts[0]) && (parts.length == 1 || parts[1].contains("="))) {
+                fault.method = "*";
+                fault.path = "*";
+                i = 1;
+            }
+            else {
+                fault.method = parts[0].toUpperCase(Locale.ROOT);
+                fault.path = parts[1];
+                i = 2;
+            }
+            for (; i < parts.length; i++) {
+                var eq = parts[i].indexOf('=');
+                if (eq < 0) {
+                    throw new IllegalArgumentException("Expected name=value in fault rule: " + line);
+                }
+                var value = parts[i].substring(eq + 1);
+                switch (parts[i].substring(0, eq)) {
+                    case "delay":
+                        fault.delayMillis = Long.parseLong(value);
+                        break;
+                    case "jitter":
+                        fault.jitterMillis = Long.parseLong(value);
+                        break;
+                    case "error":
+                        fault.errorRate = value.endsWith("%")
+                                ? Double.parseDouble(value.substring(0, value.length() - 1)) / 100
+                                : Double.parseDouble(value);
+                        break;
+                    case "throttle":
+                        fault.bytesPerSecond = bytes(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown fault " + parts[i] + " in rule: " + line);
+                }
+            }
+            faults.add(fault);
+        }
+        return faults;
+    }
+
+    private static long bytes(String value) {
+        var upper = value.toUpperCase(Locale.ROOT);
+        if (upper.endsWith("MB")) {
+            return (long) (Double.parseDouble(upper.substring(0, upper.length() - 2)) * 1024 * 1024);
+        }
+        if (upper.endsWith("KB")) {
+            return (long) (Double.parseDouble(upper.substring(0, upper.length() - 2)) * 1024);
+        }
+        return Long.parseLong(upper.endsWith("B") ? upper.substring(0, upper.length() - 1) : upper);
+    }
+
+    public String baseUri() {
+        return "http://" + server.getAddress().getHostString();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public List<Fault> faults() {
+        return faults;
+    }
+
+    /**
+     * Replaces the rules for the following requests, an empty list makes the proxy pass everything through.
+     */
+    public void faults(List<Fault> faults) {
+        this.faults = faults;
+    }
+
+    public void resetCounters() {
+        counters.clear();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var method = exchange.getRequestMethod();
+        var path = exchange.getRequestURI().getPath();
+        var endpoint = method + " " + path;
+        var fault = match(method, path);
+        var count = counters.computeIfAbsent(endpoint, k -> new Counters());
+        count.requests.increment();
+        try {
+            if (fault != null && fault.delayMillis + fault.jitterMillis > 0) {
+                var delay = Math.max(0, fault.delayMillis
+                        + ThreadLocalRandom.current().nextLong(-fault.jitterMillis, fault.jitterMillis + 1));
+                count.delayMillis.add(delay);
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            if (fault != null && fault.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < fault.errorRate) {
+                count.errors.increment();
+                var bytes = new JSONObject().put("success", false).put("message", "Injected fault")
+                        .toString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.sendResponseHeaders(500, bytes.length);
+                try (var out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+                return;
+            }
+            HttpResponse<byte[]> response;
+            try {
+                response = forward(exchange);
+            }
+            catch (IOException e) {
+                count.upstreamFailures.increment();
+                exchange.sendResponseHeaders(502, -1);
+                exchange.close();
+                return;
+            }
+            response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                    .ifPresent(v -> exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, v));
+            response.headers().firstValue(HttpHeaders.ETAG)
+                    .ifPresent(v -> exchange.getResponseHeaders().set(HttpHeaders.ETAG, v));
+            var body = response.body();
+            exchange.sendResponseHeaders(response.statusCode(), body.length == 0 ? -1 : body.length);
+            try (var out = exchange.getResponseBody()) {
+                if (fault == null || fault.bytesPerSecond <= 0) {
+                    out.write(body);
+                    return;
+                }
+                //paced in chunks of a tenth of a second worth of bytes
+                var chunk = (int) Math.max(1, Math.min(64 * 1024, fault.bytesPerSecond / 10));
+                var start = System.nanoTime();
+                for (int offset = 0; offset < body.length; offset += chunk) {
+                    var due = start + TimeUnit.SECONDS.toNanos(1) * offset / fault.bytesPerSecond;
+                    var wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    out.write(body, offset, Math.min(chunk, body.length - offset));
+                    out.flush();
+                }
+                count.throttledBytes.add(body.length);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    private HttpResponse<byte[]> forward(HttpExchange exchange) throws IOException, InterruptedException {
+        var body = exchange.getRequestBody().readAllBytes();
+        var request = HttpRequest.newBuilder(upstream.resolve(exchange.getRequestURI().getRawPath()
+                        + (exchange.getRequestURI().getRawQuery() == null ? "" : "?" + exchange.getRequestURI().getRawQuery())))
+                .method(exchange.getRequestMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (var name : List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.AUTHORIZATION, HttpHeaders.IF_NONE_MATCH)) {
+            var value = exchange.getRequestHeaders().getFirst(name);
+            if (value != null) {
+                request.header(name, value);
+            }
+        }
+        return http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private Fault match(String method, String path) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        for (var fault : faults) {
+            if (("*".equals(fault.path) || fault.path.equals(path)) && ("*".equals(fault.method) || fault.method.equals(method))) {
+                return fault;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Requests and injected faults per endpoint since the last {@link #resetCounters()}.
+     */
+    public String report() {
+        var sb = new StringBuilder(String.format("%-28s %9s %9s %12s %9s %12s%n",
+                "proxied endpoint", "requests", "errors", "delay ms", "5xx%", "throttled B"));
+        new TreeMap<>(counters).forEach((endpoint, c) -> {
+            var requests = c.requests.sum();
+            var errors = c.errors.sum() + c.upstreamFailures.sum();
+            sb.append(String.format("%-28s %9d %9d %12d %8.2f%% %12d%n", endpoint, requests, errors,
+                    c.delayMillis.sum(), requests == 0 ? 0.0 : 100.0 * errors / requests, c.throttledBytes.sum()));
+        });
+        return sb.toString();
+    }
+
+    public JSONObject toJson() {
+        var json = new JSONObject();
+        counters.forEach((endpoint, c) -> json.put(endpoint, new JSONObject()
+                .put("requests", c.requests.sum())
+                .put("injectedErrors", c.errors.sum())
+                .put("upstreamFailures", c.upstreamFailures.sum())
+                .put("delayMillis", c.delayMillis.sum())
+                .put("throttledBytes", c.throttledBytes.sum())));
+        return json;
+    }
+
+    public static class Fault {
+        String method;
+        String path;
+        long delayMillis;
+        long jitterMillis;
+        double errorRate;
+        long bytesPerSecond;
+
+        @Override
+        public String toString() {
+            return method + " " + path + " delay=" + delayMillis + " jitter=" + jitterMillis
+                    + " error=" + errorRate * 100 + "% throttle=" + bytesPerSecond;
+        }
+    }
+
+    private static class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder upstreamFailures = new LongAdder();
+        final LongAdder delayMillis = new LongAdder();
+        final LongAdder throttledBytes = new LongAdder();
+    }
+}
@@ -0,0 +1,147 @@
+package com.yandex.diplom_2;
+
+import io.restassured.response.Response;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide copy of {@code /api/ingredients}, parsed once and indexed by {@code type} and {@code _id}.
+ * After {@code catalog.ttl} seconds (default 300) the next {@link #get()} revalidates it with
+ * {@code If-None-Match}; a 304 only extends the lease, a 200 replaces the snapshot. Any other answer
+ * or a request that fails outright keeps the stale snapshot for another {@code catalog.retrySeconds}
+ * (default 5) before the next attempt. Snapshots are immutable, the expiry lives next to the current one,
+ * so callers may keep and share them freely.
+ */
+public class IngredientCatalog {
+    public static final String BUN = "bun";
+    public static final String MAIN = "main";
+    public static final String SAUCE = "sauce";
+
+    private static final long TTL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("catalog.ttl", 300));
+    private static final long RETRY_NANOS = Math.min(TTL_NANOS, TimeUnit.SECONDS.toNanos(Long.getLong("catalog.retrySeconds", 5)));
+    private static final BaseTest API = new BaseTest();
+
+    private static volatile Lease current;
+
+    private final List<String> ids;
+    private final Map<String, Map<String, Object>> byId;
+    private final Map<String, List<String>> byType;
+    private final String etag;
+
+    private IngredientCatalog(List<Map<String, Object>> data, String etag) {
+        var ids = new ArrayList<String>(data.size());
+        var byId = new LinkedHashMap<String, Map<String, Object>>();
+        var byType = new HashMap<String, List<String>>();
+        for (var item : data) {
+            var id = (String) item.get("_id");
+            ids.add(id);
+            byId.put(id, Collections.unmodifiableMap(item));
+            byType.computeIfAbsent((String) item.get("type"), t -> new ArrayList<>()).add(id);
+        }
+        byType.replaceAll((type, list) -> List.copyOf(list));
+        this.ids = List.copyOf(ids);
+        this.byId = Collections.unmodifiableMap(byId);
+        this.byType = Collections.unmodifiableMap(byType);
+        this.etag = etag;
+    }
+
+    /**
+     * Returns the cached catalog, fetching or revalidating it first when the TTL has run out.
+     */
+    public static IngredientCatalog get() {
+        var lease = current;
+        if (lease == null || System.nanoTime() - lease.expiresAt > 0) {
+            lease = refresh(lease);
+        }
+        return lease.catalog;
+    }
+
+    /**
+     * Single-flight: concurrent callers wait for the first one instead of fetching again.
+     */
+    private static synchronized Lease refresh(Lease stale) {
+        if (current != stale) {
+            return current;
+        }
+        Response response;
+        try {
+            response = stale == null || stale.catalog.etag == null
+                    ? API.tryGetIngredients()
+                    : API.tryGetIngredients(stale.catalog.etag);
+        }
+        catch (RuntimeException e) {
+            if (stale == null) {
+                throw e;
+            }
+            return retryLater(stale);
+        }
+        if (response.statusCode() == 304) {
+            current = new Lease(stale.catalog, System.nanoTime() + TTL_NANOS);
+            return current;
+        }
+        if (response.statusCode() != 200) {
+            if (stale != null) {
+                return retryLater(stale);
+            }
+            throw new IllegalStateException("Unable to load ingredients: " + response.statusLine());
+        }
+        List<Map<String, Object>> data = response.jsonPath().getList("data");
+        current = new Lease(new IngredientCatalog(data, response.header("ETag")), System.nanoTime() + TTL_NANOS);
+        return current;
+    }
+
+    /**
+     * Keeps serving the stale snapshot, otherwise every get() would queue up in {@link #refresh}
+     * and hit the failing backend again.
+     */
+    private static Lease retryLater(Lease stale) {
+        current = new Lease(stale.catalog, System.nanoTime() + RETRY_NANOS);
+        return current;
+    }
+
+    public List<String> ids() {
+        return ids;
+    }
+
+    public List<String> ofType(String type) {
+        return byType.getOrDefault(type, List.of());
+    }
+
+    public Map<String, Object> byId(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * A bun with one main and one sauce, picked at random.
+     */
+    public List<String> randomBurger() {
+        return List.of(random(ofType(BUN)), random(ofType(MAIN)), random(ofType(SAUCE)));
+    }
+
+    public String randomId() {
+        return random(ids);
+    }
+
+    private static String random(List<String> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    /**
+     * The current snapshot and when it has to be revalidated.
+     */
+    private static class Lease {
+        final IngredientCatalog catalog;
+        final long expiresAt;
+
+        Lease(IngredientCatalog catalog, long expiresAt) {
+            this.catalog = catalog;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
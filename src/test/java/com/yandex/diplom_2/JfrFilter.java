@@ -0,0 +1,45 @@
+package com.yandex.diplom_2;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Emits an {@link ApiCallEvent} per call. Sizes are only computed while a recording is running.
+ */
+public class JfrFilter implements Filter {
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        var event = new ApiCallEvent();
+        if (!event.isEnabled()) {
+            return ctx.next(requestSpec, responseSpec);
+        }
+        event.begin();
+        Response response = null;
+        try {
+            response = ctx.next(requestSpec, responseSpec);
+            return response;
+        }
+        finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.endpoint = LatencyFilter.endpoint(requestSpec);
+                Object body = requestSpec.getBody();
+                event.requestBytes = body == null ? 0 : body instanceof byte[]
+                        ? ((byte[]) body).length
+                        : body.toString().getBytes(StandardCharsets.UTF_8).length;
+                if (response != null) {
+                    event.statusCode = response.statusCode();
+                    var length = response.header("Content-Length");
+                    event.responseBytes = length != null ? Long.parseLong(length) : response.asByteArray().length;
+                }
+                event.commit();
+            }
+        }
+    }
+}
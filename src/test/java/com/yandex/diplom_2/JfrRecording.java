@@ -0,0 +1,62 @@
+package com.yandex.diplom_2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Flight recording of a whole run, started when {@code -Djfr.record=<file>} is set
+ * (the {@code jfr} Maven profile sets it to {@code target/suite.jfr}).
+ * Started from code rather than with {@code -XX:StartFlightRecording}, which fails
+ * to initialise next to the aspectj agent.
+ */
+public class JfrRecording {
+    public static final String PROPERTY = "jfr.record";
+
+    private static Recording recording;
+
+    private JfrRecording() {
+    }
+
+    public static synchronized void start() {
+        var file = System.getProperty(PROPERTY);
+        if (file == null || file.isBlank() || recording != null) {
+            return;
+        }
+        try {
+            recording = new Recording(Configuration.getConfiguration(System.getProperty("jfr.settings", "profile")));
+        }
+        catch (IOException | ParseException e) {
+            throw new IllegalStateException("Unable to read JFR settings", e);
+        }
+        recording.setName("stellar-burgers");
+        recording.setToDisk(true);
+        recording.start();
+    }
+
+    public static synchronized void stop() {
+        if (recording == null) {
+            return;
+        }
+        Path file = Paths.get(System.getProperty(PROPERTY));
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            recording.stop();
+            recording.dump(file);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.yandex.diplom_2;
+
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Wraps the surefire run into a {@link JfrRecording}, registered in {@code pom.xml}.
+ */
+@RunListener.ThreadSafe
+public class JfrRecordingListener extends RunListener {
+
+    @Override
+    public void testRunStarted(Description description) {
+        JfrRecording.start();
+    }
+
+    @Override
+    public void testRunFinished(Result result) {
+        JfrRecording.stop();
+    }
+}
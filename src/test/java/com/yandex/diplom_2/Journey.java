@@ -0,0 +1,228 @@
+package com.yandex.diplom_2;
+
+import io.restassured.response.Response;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * A named sequence of {@link BaseTest} calls with a weight in a {@link JourneyRunner} mix.
+ * Steps share a {@link Session}: values saved from one response (token, order number)
+ * are read by the following calls.
+ *
+ * <pre>
+ * Journey.named("order", 20)
+ *         .before(s -&gt; s.put("user", UserPool.shared().lease()))
+ *         .call("POST /api/orders", (api, s) -&gt; api.tryOrderCreate(..., s.&lt;PooledUser&gt;get("user").accessToken()))
+ *         .save("number", "order.number")
+ *         .think(500, 2000)
+ *         .call("GET /api/orders", ...)
+ *         .after(s -&gt; UserPool.shared().release(s.get("user")))
+ *         .build();
+ * </pre>
+ *
+ * A call answered with a status of 400 or above, or failing its {@link Builder#check check}, ends the journey;
+ * the {@link Builder#always always} calls and {@link Builder#after after} actions still run.
+ */
+public class Journey {
+    public final String name;
+    public final int weight;
+    private final List<Step> steps;
+    private final List<Step> cleanup;
+
+    private Journey(Builder builder) {
+        this.name = builder.name;
+        this.weight = builder.weight;
+        this.steps = List.copyOf(builder.steps);
+        this.cleanup = List.copyOf(builder.cleanup);
+    }
+
+    public static Builder named(String name, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight of " + name + " must be positive");
+        }
+        return new Builder(name, weight);
+    }
+
+    /**
+     * Runs the steps with a fresh session, each call is counted in {@code stats} under its endpoint.
+     * Returns whether every step succeeded.
+     */
+    public boolean run(BaseTest api, LoadStats stats) throws InterruptedException {
+        var session = new Session();
+        var ok = true;
+        try {
+            for (var step : steps) {
+                if (!step.run(api, session, stats)) {
+                    ok = false;
+                    break;
+                }
+            }
+        }
+        finally {
+            for (var step : cleanup) {
+                ok &= step.run(api, session, stats);
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Values passed between the steps of one journey run.
+     */
+    public static class Session {
+        private final Map<String, Object> values = new HashMap<>();
+
+        @SuppressWarnings("unchecked")
+        public <T> T get(String key) {
+            if (!values.containsKey(key)) {
+                throw new IllegalStateException("No " + key + " in the journey session");
+            }
+            return (T) values.get(key);
+        }
+
+        public Session put(String key, Object value) {
+            values.put(key, value);
+            return this;
+        }
+
+        public boolean has(String key) {
+            return values.containsKey(key);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Call {
+        Response send(BaseTest api, Session session);
+    }
+
+    private interface Step {
+        boolean run(BaseTest api, Session session, LoadStats stats) throws InterruptedException;
+    }
+
+    private static class CallStep implements Step {
+        final String endpoint;
+        final Call call;
+        final Map<String, String> saves = new HashMap<>();
+        final List<BiPredicate<Response, Session>> checks = new ArrayList<>();
+
+        CallStep(String endpoint, Call call) {
+            this.endpoint = endpoint;
+            this.call = call;
+        }
+
+        @Override
+        public boolean run(BaseTest api, Session session, LoadStats stats) {
+            boolean ok;
+            try {
+                var response = call.send(api, session);
+                ok = response.statusCode() < 400;
+                if (ok) {
+                    saves.forEach((key, path) -> session.put(key, response.path(path)));
+                    ok = checks.stream().allMatch(check -> check.test(response, session));
+                }
+            }
+            catch (Exception e) {
+                ok = false;
+            }
+            stats.record(endpoint, ok);
+            return ok;
+        }
+    }
+
+    public static class Builder {
+        private final String name;
+        private final int weight;
+        private final List<Step> steps = new ArrayList<>();
+        private final List<Step> cleanup = new ArrayList<>();
+        private CallStep last;
+
+        private Builder(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        /**
+         * Local action before or between calls, e.g. leasing a user.
+         */
+        public Builder before(Consumer<Session> action) {
+            steps.add((api, session, stats) -> {
+                action.accept(session);
+                return true;
+            });
+            return this;
+        }
+
+        /**
+         * A request counted under {@code endpoint}, e.g. {@code "POST /api/orders"}.
+         */
+        public Builder call(String endpoint, Call call) {
+            last = new CallStep(endpoint, call);
+            steps.add(last);
+            return this;
+        }
+
+        /**
+         * Stores the value at the JSON {@code path} of the previous call's response as {@code key}.
+         */
+        public Builder save(String key, String path) {
+            lastCall("save").saves.put(key, path);
+            return this;
+        }
+
+        /**
+         * Extra success condition for the previous call.
+         */
+        public Builder check(BiPredicate<Response, Session> check) {
+            lastCall("check").checks.add(check);
+            return this;
+        }
+
+        /**
+         * Pause of a uniformly random length between the bounds, in milliseconds.
+         */
+        public Builder think(long minMillis, long maxMillis) {
+            steps.add((api, session, stats) -> {
+                TimeUnit.MILLISECONDS.sleep(minMillis + ThreadLocalRandom.current().nextLong(maxMillis - minMillis + 1));
+                return true;
+            });
+            return this;
+        }
+
+        /**
+         * A request made at the end of every run, e.g. deleting the user; skipped if {@code key} was never saved.
+         */
+        public Builder always(String endpoint, String key, Call call) {
+            var step = new CallStep(endpoint, call);
+            cleanup.add((api, session, stats) -> !session.has(key) || step.run(api, session, stats));
+            return this;
+        }
+
+        /**
+         * Local action at the end of every run, e.g. returning a leased user.
+         */
+        public Builder after(Consumer<Session> action) {
+            cleanup.add((api, session, stats) -> {
+                action.accept(session);
+                return true;
+            });
+            return this;
+        }
+
+        public Journey build() {
+            return new Journey(this);
+        }
+
+        private CallStep lastCall(String what) {
+            if (last == null || steps.get(steps.size() - 1) != last) {
+                throw new IllegalStateException(what + " must follow a call in journey " + name);
+            }
+            return last;
+        }
+    }
+}
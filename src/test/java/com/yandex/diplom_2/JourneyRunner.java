@@ -0,0 +1,175 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONObject;
+
+/**
+ * Starts {@link Journey journeys} at a fixed total rate, each picked at random in proportion to its weight.
+ * Like the open mode of {@link LoadRunner}, a start is dropped and counted when {@code journey.users}
+ * journeys are already in flight.
+ *
+ * <p>Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.JourneyRunner}, the mix is
+ * {@link #defaultMix()}. Configured with {@code journey.rate} (journeys per second, default 20),
+ * {@code journey.users} (default 32), {@code journey.duration} (seconds, default 10) and
+ * {@code journey.graceSeconds}, how long journeys still running at the end may take to finish (default 60).
+ */
+public class JourneyRunner {
+    private final BaseTest api = new BaseTest();
+    private final LoadStats calls = new LoadStats();
+    private final LoadStats journeys = new LoadStats();
+    private final long graceMillis = TimeUnit.SECONDS.toMillis(Long.getLong("journey.graceSeconds", 60));
+
+    private final List<Journey> mix;
+    private final int[] cumulativeWeights;
+    private final double rate;
+    private final int users;
+    private final long durationMillis;
+
+    public JourneyRunner(List<Journey> mix, double rate, int users, long durationMillis) {
+        this.mix = List.copyOf(mix);
+        this.cumulativeWeights = new int[mix.size()];
+        var total = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            total += mix.get(i).weight;
+            cumulativeWeights[i] = total;
+        }
+        this.rate = rate;
+        this.users = users;
+        this.durationMillis = durationMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        BaseTest.configureTarget();
+        RestAssured.filters(new JfrFilter(), new LatencyFilter());
+        JfrRecording.start();
+        try {
+            var runner = new JourneyRunner(defaultMix(),
+                    Double.parseDouble(System.getProperty("journey.rate", "20")),
+                    Integer.getInteger("journey.users", 32),
+                    TimeUnit.SECONDS.toMillis(Long.getLong("journey.duration", 10)));
+            var elapsed = runner.run();
+            System.out.print(runner.journeys.report(elapsed));
+            System.out.print(runner.calls.report(elapsed));
+            System.out.print(LatencyRegistry.toText());
+            LatencyRegistry.publish();
+        }
+        finally {
+            JfrRecording.stop();
+            StandInServer.stopInstance();
+        }
+    }
+
+    /**
+     * 70% browse the ingredients, 20% order with a pooled user, 10% register and update the profile.
+     */
+    public static List<Journey> defaultMix() {
+        var browse = Journey.named("browse", 70)
+                .call("GET /api/ingredients", (api, s) -> api.tryGetIngredients())
+                .think(200, 1000)
+                .call("GET /api/orders/all", (api, s) -> api.tryOrdersGetAll())
+                .build();
+
+        var order = Journey.named("order", 20)
+                .before(s -> s.put("user", UserPool.shared().lease()))
+                .call("POST /api/orders", (api, s) -> api.tryOrderCreate(new JSONObject()
+                        .put("ingredients", IngredientCatalog.get().randomBurger()), s.<PooledUser>get("user").accessToken()))
+                .save("number", "order.number")
+                .think(200, 1000)
+                .call("GET /api/orders", (api, s) -> api.tryOrdersGet(s.<PooledUser>get("user").accessToken()))
+                .check((response, s) -> response.<List<Integer>>path("orders.number").contains(s.<Integer>get("number")))
+                .after(s -> {
+                    if (s.has("user")) {
+                        UserPool.shared().release(s.get("user"));
+                    }
+                })
+                .build();
+
+        var profile = Journey.named("profile", 10)
+                .before(s -> s.put("identity", UserIdentity.next()))
+                .call("POST /api/auth/register", (api, s) -> api.tryUserCreate(s.<UserIdentity>get("identity").toJson()))
+                .save("registered", "accessToken")
+                .call("POST /api/auth/login", (api, s) -> api.tryUserLogin(s.<UserIdentity>get("identity").credentials()))
+                .save("token", "accessToken")
+                .think(200, 1000)
+                .call("PATCH /api/auth/user", (api, s) -> api.tryUserUpdate(new JSONObject()
+                        .put("name", s.<UserIdentity>get("identity").name + "upd"), s.get("token")))
+                .call("GET /api/auth/user", (api, s) -> api.tryUserGetInfo(s.get("token")))
+                .check((response, s) -> response.path("user.name").equals(s.<UserIdentity>get("identity").name + "upd"))
+                .always("DELETE /api/auth/user", "registered", (api, s) -> api.tryUserDelete(s.get("registered")))
+                .build();
+
+        return List.of(browse, order, profile);
+    }
+
+    public LoadStats calls() {
+        return calls;
+    }
+
+    /**
+     * Completed journeys by name, a journey with a failed step counts as an error.
+     */
+    public LoadStats journeys() {
+        return journeys;
+    }
+
+    /**
+     * Runs the mix and returns its wall-clock duration in milliseconds.
+     */
+    public long run() throws InterruptedException {
+        IngredientCatalog.get();
+        var start = System.currentTimeMillis();
+        var deadline = start + durationMillis;
+        var interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        var busy = new Semaphore(users);
+        var pool = Executors.newFixedThreadPool(users);
+        try {
+            var next = System.nanoTime();
+            while (System.currentTimeMillis() < deadline) {
+                var wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                next += interval;
+                if (!busy.tryAcquire()) {
+                    journeys.drop();
+                    continue;
+                }
+                var journey = pick();
+                pool.execute(() -> {
+                    try {
+                        journeys.record(journey.name, journey.run(api, calls));
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally {
+                        busy.release();
+                    }
+                });
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        if (!pool.awaitTermination(deadline + graceMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+            pool.shutdownNow();
+            throw new IllegalStateException("Journeys still running " + graceMillis + " ms after the end of the run");
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private Journey pick() {
+        var ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (ticket < cumulativeWeights[i]) {
+                return mix.get(i);
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
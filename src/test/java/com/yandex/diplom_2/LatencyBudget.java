@@ -0,0 +1,47 @@
+package com.yandex.diplom_2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Latency budgets from {@code latency-budgets.properties}.
+ * {@code -Dsla.scale=2} multiplies every budget, e.g. for a slower environment.
+ */
+public class LatencyBudget {
+    private static final Properties BUDGETS = load();
+    private static final double SCALE = Double.parseDouble(System.getProperty("sla.scale", "1"));
+
+    private LatencyBudget() {
+    }
+
+    public static long millis(String endpoint) {
+        return Math.round(Long.parseLong(BUDGETS.getProperty(endpoint, BUDGETS.getProperty("default"))) * SCALE);
+    }
+
+    public static int samples() {
+        return Integer.getInteger("sla.samples", Integer.parseInt(BUDGETS.getProperty("samples", "10")));
+    }
+
+    public static int warmup() {
+        return Integer.parseInt(BUDGETS.getProperty("warmup", "1"));
+    }
+
+    public static double percentile() {
+        return Double.parseDouble(BUDGETS.getProperty("percentile", "90"));
+    }
+
+    private static Properties load() {
+        var properties = new Properties();
+        try (var in = LatencyBudget.class.getResourceAsStream("/latency-budgets.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        properties.putIfAbsent("default", "1000");
+        return properties;
+    }
+}
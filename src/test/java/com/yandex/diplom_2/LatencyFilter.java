@@ -0,0 +1,37 @@
+package com.yandex.diplom_2;
+
+import io.restassured.filter.Filter;
+import io.restassured.filter.FilterContext;
+import io.restassured.response.Response;
+import io.restassured.specification.FilterableRequestSpecification;
+import io.restassured.specification.FilterableResponseSpecification;
+
+/**
+ * Times every call and records it into {@link LatencyRegistry} under
+ * {@code "METHOD /path/template"}, e.g. {@code "POST /api/orders"}.
+ * Failed calls are recorded too, under the same key. The body is read inside the timing,
+ * so a slow transfer counts as much as a slow first byte.
+ */
+public class LatencyFilter implements Filter {
+
+    @Override
+    public Response filter(FilterableRequestSpecification requestSpec, FilterableResponseSpecification responseSpec,
+                           FilterContext ctx) {
+        var start = System.nanoTime();
+        try {
+            var response = ctx.next(requestSpec, responseSpec);
+            response.asByteArray();
+            return response;
+        }
+        finally {
+            LatencyRegistry.record(endpoint(requestSpec), System.nanoTime() - start);
+        }
+    }
+
+    static String endpoint(FilterableRequestSpecification requestSpec) {
+        //the path is either the base path of an ApiSpecs specification or given to the call
+        var path = requestSpec.getBasePath() + requestSpec.getUserDefinedPath();
+        var query = path.indexOf('?');
+        return requestSpec.getMethod() + " " + (query < 0 ? path : path.substring(0, query));
+    }
+}
@@ -0,0 +1,144 @@
+package com.yandex.diplom_2;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.model.FixtureResult;
+import io.qameta.allure.model.Status;
+import io.qameta.allure.model.TestResultContainer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+/**
+ * JVM-wide latency histograms keyed by {@code "METHOD /path/template"}.
+ * Values are recorded in microseconds into fixed-size HdrHistograms (1 µs .. 1 h,
+ * 3 significant digits), so memory does not grow with the number of calls and
+ * recording is safe from any thread.
+ */
+public class LatencyRegistry {
+    public static final Path REPORT = Paths.get("target", "latency.json");
+    public static final Path TABLE = Paths.get("target", "latency.txt");
+
+    static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private static final Map<String, Histogram> HISTOGRAMS = new ConcurrentSkipListMap<>();
+
+    private LatencyRegistry() {
+    }
+
+    public static void record(String endpoint, long nanos) {
+        histogram(endpoint).recordValue(Math.min(Math.max(nanos / 1000, 1), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    public static Histogram histogram(String endpoint) {
+        return HISTOGRAMS.computeIfAbsent(endpoint, e -> newHistogram());
+    }
+
+    public static Histogram newHistogram() {
+        return new ConcurrentHistogram(1, HIGHEST_TRACKABLE_MICROS, 3);
+    }
+
+    public static Map<String, Histogram> histograms() {
+        return HISTOGRAMS;
+    }
+
+    public static void reset() {
+        HISTOGRAMS.clear();
+    }
+
+    /**
+     * Percentiles in milliseconds per endpoint.
+     */
+    public static JSONObject toJson() {
+        var json = new JSONObject();
+        HISTOGRAMS.forEach((endpoint, h) -> json.put(endpoint, summary(h)));
+        return json;
+    }
+
+    public static JSONObject summary(Histogram h) {
+        return new JSONObject()
+                .put("count", h.getTotalCount())
+                .put("p50", millis(h.getValueAtPercentile(50)))
+                .put("p90", millis(h.getValueAtPercentile(90)))
+                .put("p99", millis(h.getValueAtPercentile(99)))
+                .put("p999", millis(h.getValueAtPercentile(99.9)))
+                .put("max", millis(h.getMaxValue()));
+    }
+
+    public static String toText() {
+        return toText(HISTOGRAMS);
+    }
+
+    public static String toText(Map<String, ? extends Histogram> histograms) {
+        var sb = new StringBuilder(String.format("%-28s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint (ms)", "count", "p50", "p90", "p99", "p999", "max"));
+        histograms.forEach((endpoint, h) -> sb.append(String.format("%-28s %8d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                endpoint, h.getTotalCount(),
+                millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)),
+                millis(h.getMaxValue()))));
+        return sb.toString();
+    }
+
+    /**
+     * Writes {@link #REPORT} and the {@link #toText()} table next to it as {@link #TABLE}.
+     */
+    public static void publish() {
+        if (HISTOGRAMS.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, toJson().toString(2));
+            Files.writeString(TABLE, toText());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Adds the table to the Allure results as a tear-down fixture of a container around {@code tests},
+     * the Allure uuids of the tests that ran, so the report shows it under each of them without
+     * counting an extra test.
+     */
+    public static void attach(List<String> tests) {
+        if (HISTOGRAMS.isEmpty() || tests.isEmpty()) {
+            return;
+        }
+        var lifecycle = Allure.getLifecycle();
+        var container = UUID.randomUUID().toString();
+        var fixture = UUID.randomUUID().toString();
+        var now = System.currentTimeMillis();
+        lifecycle.startTestContainer(new TestResultContainer()
+                .setUuid(container)
+                .setName("Latency per endpoint")
+                .setChildren(tests)
+                .setStart(now));
+        lifecycle.startTearDownFixture(container, fixture, new FixtureResult()
+                .setName("Latency per endpoint")
+                .setStatus(Status.PASSED)
+                .setStart(now));
+        lifecycle.addAttachment("latency", "text/plain", "txt", toText().getBytes(StandardCharsets.UTF_8));
+        lifecycle.addAttachment("latency.json", "application/json", "json",
+                toJson().toString(2).getBytes(StandardCharsets.UTF_8));
+        lifecycle.updateFixture(fixture, f -> f.setStop(System.currentTimeMillis()));
+        lifecycle.stopFixture(fixture);
+        lifecycle.stopTestContainer(container);
+        lifecycle.writeTestContainer(container);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
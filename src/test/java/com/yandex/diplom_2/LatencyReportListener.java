@@ -0,0 +1,55 @@
+package com.yandex.diplom_2;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Publishes the latency histograms and the {@link ReadPolicy} counters once the surefire run is over,
+ * registered in {@code pom.xml} after {@code AllureJunit4}, so the results of the run are already written.
+ */
+@RunListener.ThreadSafe
+public class LatencyReportListener extends RunListener {
+    private volatile long runStarted;
+
+    @Override
+    public void testRunStarted(Description description) {
+        runStarted = System.currentTimeMillis();
+    }
+
+    @Override
+    public void testRunFinished(Result result) {
+        LatencyRegistry.publish();
+        LatencyRegistry.attach(testsSince(runStarted));
+        ReadPolicy.publish();
+    }
+
+    /**
+     * Uuids of the Allure results that started during this run, earlier runs may share the directory.
+     */
+    private static List<String> testsSince(long started) {
+        var tests = new ArrayList<String>();
+        if (!Files.isDirectory(ShardPlanner.RESULTS)) {
+            return tests;
+        }
+        try (var files = Files.list(ShardPlanner.RESULTS)) {
+            for (var file : (Iterable<Path>) files.filter(f -> f.toString().endsWith("-result.json"))::iterator) {
+                var test = new JSONObject(Files.readString(file));
+                if (test.optLong("start") >= started) {
+                    tests.add(test.getString("uuid"));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,269 @@
+package com.yandex.diplom_2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URISyntaxException;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+/**
+ * Runs the {@link LoadRunner} scenario from several {@link LoadWorker} JVMs at once and merges
+ * their interval histograms into one report. Histograms travel in the HdrHistogram compressed
+ * encoding and are added up, so the merged percentiles are exact, not averages of percentiles.
+ * The per-worker breakdown shows throughput, latency and process CPU of every worker; a worker
+ * with high CPU and high latency is itself the bottleneck.
+ *
+ * <p>Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.LoadCoordinator}, configured with:
+ * <ul>
+ *     <li>{@code dist.workers} - workers to wait for, default 2</li>
+ *     <li>{@code dist.spawn} - how many of them to start as local processes, default all</li>
+ *     <li>{@code dist.bind} / {@code dist.port} - listening address, default loopback and a free port</li>
+ *     <li>{@code load.users}, {@code load.rampUp}, {@code load.duration} - per worker, as for {@link LoadRunner}</li>
+ * </ul>
+ * Without {@code stellar.target} the coordinator starts the {@link StandInServer} and points the workers at it.
+ */
+public class LoadCoordinator {
+    public static final Path REPORT = Paths.get("target", "distributed-latency.json");
+    static final long START_DELAY_MILLIS = 1000;
+
+    private final Map<String, Histogram> merged = new ConcurrentSkipListMap<>();
+    private final LoadStats stats = new LoadStats();
+    private final Map<Integer, WorkerReport> workers = new ConcurrentSkipListMap<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var expected = Integer.getInteger("dist.workers", 2);
+        var spawn = Integer.getInteger("dist.spawn", expected);
+        var users = Integer.getInteger("load.users", 8);
+        var ramp = TimeUnit.SECONDS.toMillis(Long.getLong("load.rampUp", 0));
+        var duration = TimeUnit.SECONDS.toMillis(Long.getLong("load.duration", 10));
+        var target = System.getProperty(BaseTest.TARGET_PROPERTY, "");
+        if (target.isEmpty()) {
+            var stand = StandInServer.instance();
+            target = stand.baseUri() + ":" + stand.port();
+        }
+        var coordinator = new LoadCoordinator();
+        var processes = new ArrayList<Process>();
+        try (var server = new ServerSocket(Integer.getInteger("dist.port", 0), expected,
+                InetAddress.getByName(System.getProperty("dist.bind", "127.0.0.1")))) {
+            for (int i = 0; i < spawn; i++) {
+                processes.add(spawnWorker(i, server.getLocalPort(), target));
+            }
+            var elapsed = coordinator.run(server, expected, users, ramp, duration);
+            System.out.print(coordinator.report(elapsed));
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, coordinator.toJson(elapsed).toString(2));
+        }
+        finally {
+            for (var process : processes) {
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+            StandInServer.stopInstance();
+        }
+    }
+
+    /**
+     * Waits for {@code expected} workers, starts them together and collects their results.
+     * Returns the wall-clock duration of the run in milliseconds.
+     */
+    public long run(ServerSocket server, int expected, int users, long ramp, long duration)
+            throws IOException, InterruptedException {
+        server.setSoTimeout((int) TimeUnit.SECONDS.toMillis(Long.getLong("dist.connectTimeout", 60)));
+        var sockets = new ArrayList<Socket>();
+        var readers = new ArrayList<Thread>();
+        try {
+            var connections = new ArrayList<Connection>();
+            for (int i = 0; i < expected; i++) {
+                var socket = server.accept();
+                sockets.add(socket);
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readByte() != LoadWorker.HELLO) {
+                    throw new IOException("Expected a hello from " + socket.getRemoteSocketAddress());
+                }
+                var id = in.readInt();
+                connections.add(new Connection(id < 0 ? 1000 + i : id, in,
+                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))));
+            }
+            for (var connection : connections) {
+                connection.out.writeByte(LoadWorker.START);
+                connection.out.writeLong(START_DELAY_MILLIS);
+                connection.out.writeInt(users);
+                connection.out.writeLong(ramp);
+                connection.out.writeLong(duration);
+                connection.out.flush();
+            }
+            var start = System.currentTimeMillis() + START_DELAY_MILLIS;
+            for (var connection : connections) {
+                var reader = new Thread(() -> receive(connection), "load-coordinator-" + connection.id);
+                reader.start();
+                readers.add(reader);
+            }
+            for (var reader : readers) {
+                reader.join();
+            }
+            return System.currentTimeMillis() - start;
+        }
+        finally {
+            for (var socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    public String report(long elapsedMillis) {
+        var seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        var sb = new StringBuilder(stats.report(elapsedMillis));
+        sb.append(LatencyRegistry.toText(merged));
+        sb.append(String.format("%-10s %10s %10s %9s %9s %9s %9s %8s%n",
+                "worker", "requests", "req/s", "errors", "p50 ms", "p99 ms", "max ms", "cpu%"));
+        workers.forEach((id, worker) -> {
+            var all = worker.all();
+            sb.append(String.format("%-10d %10d %10.1f %9d %9.3f %9.3f %9.3f %7.1f%%%n", id,
+                    all.getTotalCount(), all.getTotalCount() / seconds, worker.errors(),
+                    all.getValueAtPercentile(50) / 1000.0, all.getValueAtPercentile(99) / 1000.0,
+                    all.getMaxValue() / 1000.0, 100 * worker.meanCpu()));
+        });
+        return sb.toString();
+    }
+
+    public JSONObject toJson(long elapsedMillis) {
+        var endpoints = new JSONObject();
+        merged.forEach((endpoint, h) -> endpoints.put(endpoint, LatencyRegistry.summary(h)
+                .put("errors", stats.errors(endpoint))));
+        var perWorker = new JSONObject();
+        workers.forEach((id, worker) -> perWorker.put(String.valueOf(id), LatencyRegistry.summary(worker.all())
+                .put("errors", worker.errors())
+                .put("cpu", worker.meanCpu())));
+        return new JSONObject()
+                .put("elapsedMillis", elapsedMillis)
+                .put("endpoints", endpoints)
+                .put("workers", perWorker);
+    }
+
+    private void receive(Connection connection) {
+        var worker = workers.computeIfAbsent(connection.id, id -> new WorkerReport());
+        var in = connection.in;
+        try {
+            while (true) {
+                var type = in.readByte();
+                if (type == LoadWorker.INTERVAL) {
+                    in.readLong();
+                    worker.cpu.add(in.readDouble());
+                    var count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        var endpoint = in.readUTF();
+                        var interval = LoadWorker.readHistogram(in);
+                        merged.computeIfAbsent(endpoint, e -> LatencyRegistry.newHistogram()).add(interval);
+                        worker.histograms.computeIfAbsent(endpoint, e -> LatencyRegistry.newHistogram()).add(interval);
+                    }
+                }
+                else if (type == LoadWorker.DONE) {
+                    var count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        var endpoint = in.readUTF();
+                        var requests = in.readLong();
+                        var errors = in.readLong();
+                        stats.add(endpoint, requests, errors);
+                        worker.errors.put(endpoint, errors);
+                    }
+                    return;
+                }
+                else {
+                    throw new IOException("Unknown message " + type + " from worker " + connection.id);
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Worker " + connection.id + " lost: " + e);
+        }
+    }
+
+    private static Process spawnWorker(int id, int port, String target) throws IOException {
+        var java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        var command = new ArrayList<>(List.of(java, "-cp", classpath(),
+                "-Ddist.coordinator=127.0.0.1:" + port,
+                "-Ddist.worker=" + id,
+                "-D" + BaseTest.TARGET_PROPERTY + "=" + target));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("catalog.") || name.startsWith("dist.interval"))
+                .forEach(name -> command.add("-D" + name + "=" + System.getProperty(name)));
+        command.add(LoadWorker.class.getName());
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * The test classpath; under {@code exec:java} it is only known to the class loader, not to {@code java.class.path}.
+     */
+    private static String classpath() {
+        var override = System.getProperty("dist.classpath");
+        if (override != null) {
+            return override;
+        }
+        var loader = LoadCoordinator.class.getClassLoader();
+        if (loader instanceof URLClassLoader) {
+            return Arrays.stream(((URLClassLoader) loader).getURLs())
+                    .map(url -> {
+                        try {
+                            return Paths.get(url.toURI()).toString();
+                        }
+                        catch (URISyntaxException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .collect(Collectors.joining(File.pathSeparator));
+        }
+        return System.getProperty("java.class.path");
+    }
+
+    private static class Connection {
+        final int id;
+        final DataInputStream in;
+        final DataOutputStream out;
+
+        Connection(int id, DataInputStream in, DataOutputStream out) {
+            this.id = id;
+            this.in = in;
+            this.out = out;
+        }
+    }
+
+    private static class WorkerReport {
+        final Map<String, Histogram> histograms = new TreeMap<>();
+        final Map<String, Long> errors = new TreeMap<>();
+        final List<Double> cpu = new ArrayList<>();
+
+        Histogram all() {
+            var all = LatencyRegistry.newHistogram();
+            histograms.values().forEach(all::add);
+            return all;
+        }
+
+        long errors() {
+            return errors.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        double meanCpu() {
+            return cpu.stream().filter(load -> load >= 0).mapToDouble(Double::doubleValue).average().orElse(0);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import io.restassured.response.Response;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Drives the {@link BaseTest} helpers as a load generator instead of a test suite.
+ * Each iteration of a virtual user registers, logs in, creates an order, reads
+ * the user orders and the public feed and removes the user again. Responses are
+ * only counted, nothing is asserted.
+ *
+ * <p>Configured with system properties, see {@code mvn -Pload test}:
+ * <ul>
+ *     <li>{@code load.mode} - {@code closed} (fixed concurrency, default) or {@code open} (fixed arrival rate)</li>
+ *     <li>{@code load.users} - virtual users, in open mode the limit of iterations in flight</li>
+ *     <li>{@code load.rate} - iterations started per second in open mode</li>
+ *     <li>{@code load.duration} - run length in seconds</li>
+ *     <li>{@code load.rampUp} - seconds over which closed-mode users are started one by one, default 0</li>
+ *     <li>{@code load.iterations} - stop after that many iterations, whichever comes first</li>
+ *     <li>{@code load.graceSeconds} - how long iterations still running at the end may take to finish, default 60</li>
+ *     <li>{@code jfr.record} - file to save a flight recording of the run to</li>
+ * </ul>
+ */
+public class LoadRunner {
+    private final BaseTest api = new BaseTest();
+    private final LoadStats stats = new LoadStats();
+    private final AtomicLong started = new AtomicLong();
+
+    private final boolean openLoop;
+    private final int users;
+    private final double rate;
+    private final long durationMillis;
+    private final long rampMillis;
+    private final long iterations;
+    private final long graceMillis = TimeUnit.SECONDS.toMillis(Long.getLong("load.graceSeconds", 60));
+
+    public LoadRunner(boolean openLoop, int users, double rate, long durationMillis, long rampMillis, long iterations) {
+        this.openLoop = openLoop;
+        this.users = users;
+        this.rate = rate;
+        this.durationMillis = durationMillis;
+        this.rampMillis = rampMillis;
+        this.iterations = iterations;
+    }
+
+    public static LoadRunner fromSystemProperties() {
+        return fromSystemProperties(TimeUnit.SECONDS.toMillis(Long.getLong("load.duration", 10)));
+    }
+
+    /**
+     * The configured runner with {@code load.duration} replaced by {@code durationMillis}.
+     */
+    public static LoadRunner fromSystemProperties(long durationMillis) {
+        return new LoadRunner("open".equals(System.getProperty("load.mode", "closed")),
+                Integer.getInteger("load.users", 8),
+                Double.parseDouble(System.getProperty("load.rate", "50")),
+                durationMillis,
+                TimeUnit.SECONDS.toMillis(Long.getLong("load.rampUp", 0)),
+                Long.getLong("load.iterations", Long.MAX_VALUE));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        BaseTest.configureTarget();
+        RestAssured.filters(new JfrFilter(), new LatencyFilter());
+        JfrRecording.start();
+        try {
+            var runner = fromSystemProperties();
+            var elapsed = runner.run();
+            System.out.print(runner.stats.report(elapsed));
+            System.out.print(LatencyRegistry.toText());
+            System.out.print(ConnectionPool.shared().report());
+            System.out.print(ReadPolicy.report());
+            LatencyRegistry.publish();
+        }
+        finally {
+            JfrRecording.stop();
+            StandInServer.stopInstance();
+        }
+    }
+
+    public LoadStats stats() {
+        return stats;
+    }
+
+    /**
+     * Runs the load and returns its wall-clock duration in milliseconds. Returns only once every
+     * virtual user is done; closed-mode users keep starting iterations until the deadline.
+     */
+    public long run() throws InterruptedException {
+        IngredientCatalog.get();
+        var start = System.currentTimeMillis();
+        var deadline = start + durationMillis;
+        var pool = Executors.newFixedThreadPool(users);
+        try {
+            if (openLoop) {
+                runOpen(pool, deadline);
+            }
+            else {
+                runClosed(pool, deadline);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        if (!pool.awaitTermination(deadline + graceMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+            pool.shutdownNow();
+            throw new IllegalStateException("Iterations still running " + graceMillis + " ms after the end of the run");
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private void runClosed(ExecutorService pool, long deadline) {
+        for (int i = 0; i < users; i++) {
+            var delay = rampMillis * i / users;
+            pool.execute(() -> {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delay);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (System.currentTimeMillis() < deadline && started.incrementAndGet() <= iterations) {
+                    iteration();
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts iterations on a fixed schedule regardless of how long earlier ones take;
+     * when all users are busy the iteration is dropped and counted, not queued.
+     */
+    private void runOpen(ExecutorService pool, long deadline) throws InterruptedException {
+        var interval = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        var busy = new Semaphore(users);
+        var next = System.nanoTime();
+        while (System.currentTimeMillis() < deadline && started.incrementAndGet() <= iterations) {
+            var wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            next += interval;
+            if (!busy.tryAcquire()) {
+                stats.drop();
+                continue;
+            }
+            pool.execute(() -> {
+                try {
+                    iteration();
+                }
+                finally {
+                    busy.release();
+                }
+            });
+        }
+    }
+
+    void iteration() {
+        var user = UserIdentity.next();
+        var created = call("POST /api/auth/register", () -> api.tryUserCreate(BodyTemplate.USER, user.email, user.name, user.password));
+        if (created == null || created.statusCode() != 200) {
+            return;
+        }
+        String token = created.path("accessToken");
+        try {
+            call("POST /api/auth/login", () -> api.tryUserLogin(BodyTemplate.CREDENTIALS, user.email, user.password));
+            var burger = IngredientCatalog.get().randomBurger();
+            call("POST /api/orders", () -> api.tryOrderCreate(BodyTemplate.ORDER, token, burger));
+            call("GET /api/orders", () -> api.tryOrdersGet(token));
+            call("GET /api/orders/all", api::tryOrdersGetAll);
+        }
+        finally {
+            call("DELETE /api/auth/user", () -> api.tryUserDelete(token));
+        }
+    }
+
+    private Response call(String endpoint, Supplier<Response> request) {
+        try {
+            var response = request.get();
+            stats.record(endpoint, response.statusCode() < 400);
+            return response;
+        }
+        catch (Exception e) {
+            //RestAssured rethrows I/O failures such as read timeouts undeclared
+            stats.record(endpoint, false);
+            return null;
+        }
+    }
+}
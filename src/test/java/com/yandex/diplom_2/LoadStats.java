@@ -0,0 +1,80 @@
+package com.yandex.diplom_2;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint request and error counters of a load run, safe to update from any thread.
+ */
+public class LoadStats {
+    private final Map<String, Counters> endpoints = new ConcurrentSkipListMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    public void record(String endpoint, boolean ok) {
+        var counters = endpoints.computeIfAbsent(endpoint, e -> new Counters());
+        counters.requests.increment();
+        if (!ok) {
+            counters.errors.increment();
+        }
+    }
+
+    /**
+     * Adds counters collected elsewhere, e.g. by a {@link LoadWorker}.
+     */
+    public void add(String endpoint, long requests, long errors) {
+        var counters = endpoints.computeIfAbsent(endpoint, e -> new Counters());
+        counters.requests.add(requests);
+        counters.errors.add(errors);
+    }
+
+    public Set<String> endpoints() {
+        return endpoints.keySet();
+    }
+
+    /**
+     * Counts an iteration the open-loop scheduler could not start because all virtual users were busy.
+     */
+    public void drop() {
+        dropped.increment();
+    }
+
+    public long requests(String endpoint) {
+        var counters = endpoints.get(endpoint);
+        return counters == null ? 0 : counters.requests.sum();
+    }
+
+    public long errors(String endpoint) {
+        var counters = endpoints.get(endpoint);
+        return counters == null ? 0 : counters.errors.sum();
+    }
+
+    public String report(long elapsedMillis) {
+        var seconds = Math.max(elapsedMillis, 1) / 1000.0;
+        var sb = new StringBuilder(String.format("%-28s %10s %10s %10s %8s%n",
+                "endpoint", "requests", "req/s", "errors", "error%"));
+        long requests = 0;
+        long errors = 0;
+        for (var e : endpoints.entrySet()) {
+            var count = e.getValue().requests.sum();
+            var failed = e.getValue().errors.sum();
+            requests += count;
+            errors += failed;
+            sb.append(line(e.getKey(), count, failed, seconds));
+        }
+        sb.append(line("total", requests, errors, seconds));
+        sb.append(String.format("elapsed %.3f s, dropped iterations %d%n", seconds, dropped.sum()));
+        return sb.toString();
+    }
+
+    private static String line(String endpoint, long count, long failed, double seconds) {
+        return String.format("%-28s %10d %10.1f %10d %7.2f%%%n", endpoint, count, count / seconds,
+                failed, count == 0 ? 0.0 : 100.0 * failed / count);
+    }
+
+    private static class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+}
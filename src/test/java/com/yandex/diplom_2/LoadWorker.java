@@ -0,0 +1,162 @@
+package com.yandex.diplom_2;
+
+import com.sun.management.OperatingSystemMXBean;
+import io.restassured.RestAssured;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import org.HdrHistogram.Histogram;
+
+/**
+ * One process of a distributed run: connects to the {@link LoadCoordinator} given by
+ * {@code dist.coordinator} ({@code host:port}), waits for the start command, runs a closed-mode
+ * {@link LoadRunner} and streams what {@link LatencyFilter} recorded since the previous interval.
+ * Started by the coordinator for local workers, by hand on other hosts:
+ * {@code java -cp <test classpath> -Ddist.coordinator=host:port -Dstellar.target=<url> com.yandex.diplom_2.LoadWorker}.
+ *
+ * <p>Messages, each a type byte followed by {@link DataOutputStream} fields:
+ * <ul>
+ *     <li>{@code H} worker to coordinator: {@code int} worker id, {@code -1} to let the coordinator pick</li>
+ *     <li>{@code S} coordinator to worker: {@code long} start delay, {@code int} users, {@code long} ramp-up
+ *     and {@code long} duration, all in milliseconds</li>
+ *     <li>{@code I} worker to coordinator: {@code long} timestamp, {@code double} process CPU load,
+ *     {@code int} endpoint count, then per endpoint its name and a length-prefixed compressed histogram</li>
+ *     <li>{@code D} worker to coordinator: {@code int} endpoint count, then per endpoint its name,
+ *     {@code long} requests and {@code long} errors</li>
+ * </ul>
+ */
+public class LoadWorker {
+    static final byte HELLO = 'H';
+    static final byte START = 'S';
+    static final byte INTERVAL = 'I';
+    static final byte DONE = 'D';
+
+    private final Map<String, Histogram> reported = new HashMap<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var address = System.getProperty("dist.coordinator", "127.0.0.1:7450");
+        var colon = address.lastIndexOf(':');
+        BaseTest.configureTarget();
+        RestAssured.filters(new LatencyFilter());
+        try (var socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)))) {
+            new LoadWorker().run(socket, Integer.getInteger("dist.worker", -1),
+                    TimeUnit.SECONDS.toMillis(Long.getLong("dist.interval", 1)));
+        }
+        finally {
+            StandInServer.stopInstance();
+        }
+    }
+
+    void run(Socket socket, int id, long intervalMillis) throws IOException, InterruptedException {
+        //warm up before reporting ready, so that the start is not delayed and the first calls are not reported
+        IngredientCatalog.get();
+        LatencyRegistry.reset();
+
+        var in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        var out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeByte(HELLO);
+        out.writeInt(id);
+        out.flush();
+
+        if (in.readByte() != START) {
+            throw new IOException("Expected the start command");
+        }
+        var delay = in.readLong();
+        var users = in.readInt();
+        var ramp = in.readLong();
+        var duration = in.readLong();
+        var runner = new LoadRunner(false, users, 0, duration, ramp, Long.MAX_VALUE);
+
+        TimeUnit.MILLISECONDS.sleep(delay);
+        var cpu = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        var ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "load-worker-interval");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(() -> {
+            try {
+                sendInterval(out, cpu.getProcessCpuLoad());
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        try {
+            runner.run();
+        }
+        finally {
+            ticker.shutdown();
+            ticker.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        sendInterval(out, cpu.getProcessCpuLoad());
+
+        var stats = runner.stats();
+        synchronized (out) {
+            out.writeByte(DONE);
+            out.writeInt(stats.endpoints().size());
+            for (var endpoint : stats.endpoints()) {
+                out.writeUTF(endpoint);
+                out.writeLong(stats.requests(endpoint));
+                out.writeLong(stats.errors(endpoint));
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends the difference between the current histograms and those already sent, so no value is sent twice.
+     */
+    private void sendInterval(DataOutputStream out, double cpuLoad) throws IOException {
+        var intervals = new HashMap<String, Histogram>();
+        LatencyRegistry.histograms().forEach((endpoint, histogram) -> {
+            var current = histogram.copy();
+            var interval = current.copy();
+            var previous = reported.get(endpoint);
+            if (previous != null) {
+                interval.subtract(previous);
+            }
+            reported.put(endpoint, current);
+            intervals.put(endpoint, interval);
+        });
+        synchronized (out) {
+            out.writeByte(INTERVAL);
+            out.writeLong(System.currentTimeMillis());
+            out.writeDouble(cpuLoad);
+            out.writeInt(intervals.size());
+            for (var e : intervals.entrySet()) {
+                out.writeUTF(e.getKey());
+                writeHistogram(out, e.getValue());
+            }
+            out.flush();
+        }
+    }
+
+    static void writeHistogram(DataOutputStream out, Histogram histogram) throws IOException {
+        var buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        var length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        out.writeInt(length);
+        out.write(buffer.array(), 0, length);
+    }
+
+    static Histogram readHistogram(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try {
+            return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0);
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Corrupt histogram", e);
+        }
+    }
+}
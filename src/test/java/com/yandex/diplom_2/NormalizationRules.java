@@ -0,0 +1,81 @@
+package com.yandex.diplom_2;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Turns a request into the key its recorded response is stored and looked up under, so that
+ * a replayed request matches a recorded one even though tokens, ids and emails differ between runs.
+ * The rules come from {@code replay.rules} (a file) or the {@code replay-rules.txt} resource.
+ */
+public class NormalizationRules {
+    private final List<Pattern> patterns = new ArrayList<>();
+    private final List<String> replacements = new ArrayList<>();
+
+    public static NormalizationRules load() {
+        var file = System.getProperty("replay.rules");
+        try (var in = file != null
+                ? Files.newBufferedReader(Paths.get(file))
+                : new BufferedReader(new InputStreamReader(
+                        NormalizationRules.class.getResourceAsStream("/replay-rules.txt"), StandardCharsets.UTF_8))) {
+            var rules = new NormalizationRules();
+            String line;
+            while ((line = in.readLine()) != null) {
+                var tab = line.indexOf('\t');
+                if (line.isBlank() || line.startsWith("#") || tab < 0) {
+                    continue;
+                }
+                rules.add(line.substring(0, tab), line.substring(tab + 1));
+            }
+            return rules;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public NormalizationRules add(String regex, String replacement) {
+        patterns.add(Pattern.compile(regex));
+        replacements.add(Matcher.quoteReplacement(replacement));
+        return this;
+    }
+
+    /**
+     * {@code "METHOD /path?query auth|anon cond|plain body"} after the rules; only the presence of a token
+     * counts, and of an {@code If-None-Match}, so a conditional read never gets the answer to a plain one.
+     */
+    public String key(String method, String pathAndQuery, boolean authorized, boolean conditional, String body) {
+        var key = method + " " + pathAndQuery + " " + (authorized ? "auth" : "anon") + " "
+                + (conditional ? "cond" : "plain") + " " + canonical(body);
+        for (int i = 0; i < patterns.size(); i++) {
+            key = patterns.get(i).matcher(key).replaceAll(replacements.get(i));
+        }
+        return key;
+    }
+
+    /**
+     * The same JSON object serializes the same way whether it was built as a {@link JSONObject} or a {@link BodyTemplate}.
+     */
+    private static String canonical(String body) {
+        if (body == null || body.isBlank()) {
+            return "";
+        }
+        try {
+            return new JSONObject(body).toString();
+        }
+        catch (JSONException e) {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.yandex.diplom_2;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * Checks the {@code total} and {@code totalToday} order counters under concurrent order creation.
+ * Writer threads create orders for a set of leased users while a sampler keeps reading
+ * {@code /api/orders/all} and the users' {@code /api/orders}. A counter must never go down and
+ * must never be ahead of the creates sent so far; at the end it must have grown by the number
+ * of successful creates. A create that failed with an exception or a 5xx may or may not have
+ * been stored and widens the allowed range instead.
+ *
+ * <p>The feed counters are shared with everybody else ordering at the time: unless
+ * {@code checker.exclusive} is set (the default for the stand-in) they are only checked for going
+ * down and for lost updates. Users are private to the run, but only the stand-in answers
+ * {@code /api/orders} with the user's own count in {@code total}; the live host returns the global
+ * counters there (see {@code TestOrder.testOrdersNewUserForNew}) and lists no more than the last 50
+ * orders, so the user counters are checked exactly only with {@code checker.userTotals}, the default
+ * for the stand-in, and like shared ones otherwise.
+ *
+ * <p>Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.OrderCounterChecker}:
+ * <ul>
+ *     <li>{@code checker.threads} - concurrent writers, default 16</li>
+ *     <li>{@code checker.orders} - orders per writer, default 50</li>
+ *     <li>{@code checker.users} - leased users the orders are spread over, default 8</li>
+ *     <li>{@code checker.sampleMillis} - pause between two sampler rounds, default 20</li>
+ *     <li>{@code checker.timeoutSeconds} - how long the writers may take in total, default 600</li>
+ * </ul>
+ */
+public class OrderCounterChecker {
+    public static final Path REPORT = Paths.get("target", "order-counters.json");
+
+    private final BaseTest api = new BaseTest();
+    private final int threads;
+    private final int ordersPerThread;
+    private final int userCount;
+    private final boolean exclusive;
+    private final long sampleMillis = Long.getLong("checker.sampleMillis", 20);
+    private final long timeoutSeconds = Long.getLong("checker.timeoutSeconds", 600);
+    private final boolean userTotals = Boolean.parseBoolean(System.getProperty("checker.userTotals",
+            String.valueOf("local".equals(System.getProperty(BaseTest.TARGET_PROPERTY, "local")))));
+
+    public OrderCounterChecker(int threads, int ordersPerThread, int userCount, boolean exclusive) {
+        this.threads = threads;
+        this.ordersPerThread = ordersPerThread;
+        this.userCount = userCount;
+        this.exclusive = exclusive;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BaseTest.configureTarget();
+        try {
+            var target = System.getProperty(BaseTest.TARGET_PROPERTY, "local");
+            var checker = new OrderCounterChecker(Integer.getInteger("checker.threads", 16),
+                    Integer.getInteger("checker.orders", 50),
+                    Integer.getInteger("checker.users", 8),
+                    Boolean.parseBoolean(System.getProperty("checker.exclusive",
+                            String.valueOf(!"remote".equals(target) && !target.startsWith("http")))));
+            var result = checker.run();
+            System.out.print(result.report());
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, result.toJson().toString(2));
+            if (!result.consistent()) {
+                throw new IllegalStateException(result.violations.size() + " counter violations, see " + REPORT);
+            }
+        }
+        finally {
+            StandInServer.stopInstance();
+        }
+    }
+
+    public Result run() throws InterruptedException {
+        var burger = IngredientCatalog.get().randomBurger();
+        var users = new ArrayList<Tracked>();
+        for (int i = 0; i < userCount; i++) {
+            users.add(new Tracked(UserPool.shared().lease()));
+        }
+        var result = new Result();
+        var feed = new Tracked(null);
+        try {
+            var day = result.day;
+            var initialFeed = api.tryOrdersGetAll();
+            feed.baseline = initialFeed.path("total");
+            feed.baselineToday = initialFeed.path("totalToday");
+            feed.last = feed.baseline;
+            feed.lastToday = feed.baselineToday;
+            for (var user : users) {
+                user.baseline = user.last = api.tryOrdersGet(user.pooled.accessToken()).path("total");
+            }
+
+            var done = new AtomicBoolean();
+            var sampler = new Thread(() -> sample(users, feed, done, result), "counter-sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+            var start = System.nanoTime();
+            var writers = Executors.newFixedThreadPool(threads);
+            try {
+                for (int t = 0; t < threads; t++) {
+                    var offset = t;
+                    writers.execute(() -> {
+                        for (int i = 0; i < ordersPerThread; i++) {
+                            create(users.get((offset + i) % users.size()), feed, burger);
+                        }
+                    });
+                }
+            }
+            finally {
+                writers.shutdown();
+            }
+            if (!writers.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                writers.shutdownNow();
+                done.set(true);
+                throw new IllegalStateException("Writers still running after " + timeoutSeconds + " s");
+            }
+            result.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            done.set(true);
+            sampler.join();
+
+            var finalFeed = api.tryOrdersGetAll();
+            result.check("GET /api/orders/all total", feed, feed.baseline, finalFeed.path("total"), exclusive);
+            if (day.equals(LocalDate.now(ZoneOffset.UTC))) {
+                result.check("GET /api/orders/all totalToday", feed, feed.baselineToday, finalFeed.path("totalToday"), exclusive);
+            }
+            for (var user : users) {
+                result.check("GET /api/orders total of " + user.pooled.identity.email, user, user.baseline,
+                        api.tryOrdersGet(user.pooled.accessToken()).path("total"), userTotals);
+            }
+            result.created = feed.succeeded.sum();
+            result.uncertain = feed.uncertain.sum();
+            result.rejected = feed.rejected.sum();
+            return result;
+        }
+        finally {
+            users.forEach(u -> UserPool.shared().release(u.pooled));
+        }
+    }
+
+    private void create(Tracked user, Tracked feed, List<String> burger) {
+        user.attempted.increment();
+        feed.attempted.increment();
+        try {
+            var status = api.tryOrderCreate(BodyTemplate.ORDER, user.pooled.accessToken(), burger).statusCode();
+            var outcome = status == 200 ? user.succeeded : status >= 500 ? user.uncertain : user.rejected;
+            outcome.increment();
+            (status == 200 ? feed.succeeded : status >= 500 ? feed.uncertain : feed.rejected).increment();
+        }
+        catch (Exception e) {
+            //timed out or broken, the order may have been stored anyway
+            user.uncertain.increment();
+            feed.uncertain.increment();
+        }
+    }
+
+    /**
+     * Reads the feed and one user per round, {@code checker.sampleMillis} apart, until the writers are done.
+     * The attempted count is read after the response, so a counter ahead of it was incremented for a create
+     * never sent.
+     */
+    private void sample(List<Tracked> users, Tracked feed, AtomicBoolean done, Result result) {
+        for (int round = 0; !done.get(); round++) {
+            try {
+                var all = api.tryOrdersGetAll();
+                if (all.statusCode() == 200) {
+                    result.sample("GET /api/orders/all total", feed, all.path("total"), false, exclusive);
+                    result.sample("GET /api/orders/all totalToday", feed, all.path("totalToday"), true, exclusive);
+                }
+                var user = users.get(round % users.size());
+                var own = api.tryOrdersGet(user.pooled.accessToken());
+                if (own.statusCode() == 200) {
+                    result.sample("GET /api/orders total of " + user.pooled.identity.email, user, own.path("total"), false, userTotals);
+                }
+            }
+            catch (Exception e) {
+                result.samplerErrors.increment();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(sampleMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Counters of a user, or of the feed when {@code pooled} is {@code null}.
+     */
+    static class Tracked {
+        final PooledUser pooled;
+        final LongAdder attempted = new LongAdder();
+        final LongAdder succeeded = new LongAdder();
+        final LongAdder uncertain = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        int baseline;
+        int baselineToday;
+        int last;
+        int lastToday;
+
+        Tracked(PooledUser pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    public static class Result {
+        final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+        final LongAdder samples = new LongAdder();
+        final LongAdder samplerErrors = new LongAdder();
+        final LocalDate day = LocalDate.now(ZoneOffset.UTC);
+        long elapsedMillis;
+        long created;
+        long uncertain;
+        long rejected;
+
+        public boolean consistent() {
+            return violations.isEmpty();
+        }
+
+        public List<String> violations() {
+            return violations;
+        }
+
+        void sample(String counter, Tracked tracked, int value, boolean today, boolean exclusive) {
+            samples.increment();
+            var attempted = tracked.attempted.sum();
+            var last = today ? tracked.lastToday : tracked.last;
+            var baseline = today ? tracked.baselineToday : tracked.baseline;
+            //totalToday legitimately starts over at midnight
+            if (value < last && !(today && !day.equals(LocalDate.now(ZoneOffset.UTC)))) {
+                violations.add(String.format("%s went down from %d to %d", counter, last, value));
+            }
+            if (exclusive && value - baseline > attempted) {
+                violations.add(String.format("%s is %d ahead of the %d creates sent so far, double counted",
+                        counter, value - baseline - attempted, attempted));
+            }
+            if (today) {
+                tracked.lastToday = value;
+            }
+            else {
+                tracked.last = value;
+            }
+        }
+
+        void check(String counter, Tracked tracked, int baseline, int value, boolean exclusive) {
+            var grown = value - baseline;
+            var succeeded = tracked.succeeded.sum();
+            var uncertain = tracked.uncertain.sum();
+            if (grown < succeeded) {
+                violations.add(String.format("%s grew by %d for %d successful creates, %d lost",
+                        counter, grown, succeeded, succeeded - grown));
+            }
+            else if (exclusive && grown > succeeded + uncertain) {
+                violations.add(String.format("%s grew by %d for %d successful and %d uncertain creates, %d double counted",
+                        counter, grown, succeeded, uncertain, grown - succeeded - uncertain));
+            }
+        }
+
+        public String report() {
+            var sb = new StringBuilder(String.format(
+                    "%d orders created, %d uncertain, %d rejected in %.3f s; %d counter samples, %d sampler errors%n",
+                    created, uncertain, rejected, elapsedMillis / 1000.0, samples.sum(), samplerErrors.sum()));
+            synchronized (violations) {
+                violations.forEach(v -> sb.append("VIOLATION ").append(v).append('\n'));
+            }
+            sb.append(consistent() ? "counters consistent\n" : violations.size() + " violations\n");
+            return sb.toString();
+        }
+
+        public JSONObject toJson() {
+            synchronized (violations) {
+                return new JSONObject()
+                        .put("created", created)
+                        .put("uncertain", uncertain)
+                        .put("rejected", rejected)
+                        .put("elapsedMillis", elapsedMillis)
+                        .put("samples", samples.sum())
+                        .put("samplerErrors", samplerErrors.sum())
+                        .put("violations", new ArrayList<>(violations));
+            }
+        }
+    }
+}
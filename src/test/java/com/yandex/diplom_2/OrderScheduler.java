@@ -0,0 +1,279 @@
+package com.yandex.diplom_2;
+
+import io.restassured.RestAssured;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.json.JSONObject;
+
+/**
+ * Open-loop order creation load that does not suffer from coordinated omission.
+ * Every request has an intended start time taken from a constant or Poisson arrival schedule
+ * that does not wait for earlier responses. A request that cannot be sent on time because
+ * all workers are busy waits in the queue. That wait is counted: the corrected latency runs
+ * from the intended start to the response, the uncorrected one from the actual send.
+ *
+ * <p>Configured with system properties, run with
+ * {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.OrderScheduler}:
+ * <ul>
+ *     <li>{@code order.rate} - orders per second, default 50</li>
+ *     <li>{@code order.arrivals} - {@code constant} (default) or {@code poisson}</li>
+ *     <li>{@code order.duration} - schedule length in seconds, default 10</li>
+ *     <li>{@code order.workers} - bound on threads sending requests, default 32</li>
+ *     <li>{@code order.backlog} - bound on requests waiting for a worker, default 100000;
+ *     arrivals beyond it are counted as dropped</li>
+ *     <li>{@code order.graceSeconds} - how long requests still queued or in flight at the end of the
+ *     schedule may take, default 60</li>
+ * </ul>
+ * Dropped requests and requests not finished once the grace period is over are errors, so a stalled
+ * target cannot hide its worst latencies by not answering. A dropped request is recorded when it is
+ * dropped, as if it had timed out after the grace period; an unfinished one with the time from its
+ * intended start to the end of the grace period. Only requests queued or in flight are held on to.
+ */
+public class OrderScheduler {
+    public static final Path REPORT = Paths.get("target", "order-latency.json");
+
+    private final BaseTest api = new BaseTest();
+    private final Histogram corrected = LatencyRegistry.newHistogram();
+    private final Histogram uncorrected = LatencyRegistry.newHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder unfinished = new LongAdder();
+    private final Set<Request> inFlight = ConcurrentHashMap.newKeySet();
+    private final long graceNanos = TimeUnit.SECONDS.toNanos(Long.getLong("order.graceSeconds", 60));
+
+    private final double rate;
+    private final boolean poisson;
+    private final long durationNanos;
+    private final int workers;
+    private final int backlog;
+
+    public OrderScheduler(double rate, boolean poisson, long durationNanos, int workers, int backlog) {
+        this.rate = rate;
+        this.poisson = poisson;
+        this.durationNanos = durationNanos;
+        this.workers = workers;
+        this.backlog = backlog;
+    }
+
+    public static OrderScheduler fromSystemProperties() {
+        return new OrderScheduler(Double.parseDouble(System.getProperty("order.rate", "50")),
+                "poisson".equals(System.getProperty("order.arrivals", "constant")),
+                TimeUnit.SECONDS.toNanos(Long.getLong("order.duration", 10)),
+                Integer.getInteger("order.workers", 32),
+                Integer.getInteger("order.backlog", 100_000));
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        BaseTest.configureTarget();
+        RestAssured.filters(new JfrFilter());
+        JfrRecording.start();
+        try {
+            var scheduler = fromSystemProperties();
+            scheduler.run();
+            System.out.print(scheduler.report());
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, scheduler.toJson().toString(2));
+        }
+        finally {
+            JfrRecording.stop();
+            StandInServer.stopInstance();
+        }
+    }
+
+    /**
+     * Latency from the intended start time, in microseconds.
+     */
+    public Histogram corrected() {
+        return corrected;
+    }
+
+    /**
+     * Latency from the moment a worker sent the request, in microseconds.
+     */
+    public Histogram uncorrected() {
+        return uncorrected;
+    }
+
+    public long errors() {
+        return errors.sum();
+    }
+
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Requests queued or in flight when the grace period ran out, they are among the {@link #errors()}.
+     */
+    public long unfinished() {
+        return unfinished.sum();
+    }
+
+    /**
+     * Issues the schedule and waits up to {@code order.graceSeconds} for the requests still queued
+     * or in flight.
+     */
+    public void run() throws InterruptedException {
+        var catalog = IngredientCatalog.get();
+        var users = new ArrayList<PooledUser>();
+        for (int i = 0; i < workers; i++) {
+            users.add(UserPool.shared().lease());
+        }
+        var pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(backlog), daemonThreads());
+        try {
+            var start = System.nanoTime();
+            var intended = start;
+            long sequence = 0;
+            while (intended - start < durationNanos) {
+                var wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                try {
+                    pool.execute(new Request(users.get((int) (sequence++ % users.size())), catalog.randomBurger(), intended));
+                }
+                catch (RejectedExecutionException e) {
+                    dropped.increment();
+                    errors.increment();
+                    record(corrected, graceNanos);
+                }
+                intended += nextInterval();
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(intended + graceNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                var end = System.nanoTime();
+                for (var queued : pool.shutdownNow()) {
+                    ((Request) queued).abandon(end);
+                }
+                inFlight.forEach(request -> request.abandon(end));
+            }
+        }
+        finally {
+            pool.shutdownNow();
+            users.forEach(UserPool.shared()::release);
+        }
+    }
+
+    public String report() {
+        var sb = new StringBuilder(String.format("%s arrivals at %.1f/s, %d workers, %d errors, %d dropped, %d unfinished%n",
+                poisson ? "poisson" : "constant", rate, workers, errors(), dropped(), unfinished()));
+        sb.append(String.format("%-28s %8s %9s %9s %9s %9s %9s%n",
+                "POST /api/orders (ms)", "count", "p50", "p90", "p99", "p999", "max"));
+        row(sb, "corrected", corrected);
+        row(sb, "uncorrected", uncorrected);
+        return sb.toString();
+    }
+
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("arrivals", poisson ? "poisson" : "constant")
+                .put("rate", rate)
+                .put("workers", workers)
+                .put("errors", errors())
+                .put("dropped", dropped())
+                .put("unfinished", unfinished())
+                .put("corrected", LatencyRegistry.summary(corrected))
+                .put("uncorrected", LatencyRegistry.summary(uncorrected));
+    }
+
+    private static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), LatencyRegistry.HIGHEST_TRACKABLE_MICROS));
+    }
+
+    /**
+     * Gap to the next intended start: fixed, or exponentially distributed for Poisson arrivals.
+     */
+    private long nextInterval() {
+        var mean = TimeUnit.SECONDS.toNanos(1) / rate;
+        return (long) (poisson ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean : mean);
+    }
+
+    /**
+     * One scheduled order, recorded exactly once: when its response arrives or when the run gives up on it.
+     * It is in {@link #inFlight} only while a worker is sending it.
+     */
+    private class Request implements Runnable {
+        final PooledUser user;
+        final List<String> burger;
+        final long intended;
+        final AtomicBoolean settled = new AtomicBoolean();
+        volatile long sent;
+
+        Request(PooledUser user, List<String> burger, long intended) {
+            this.user = user;
+            this.burger = burger;
+            this.intended = intended;
+        }
+
+        @Override
+        public void run() {
+            sent = System.nanoTime();
+            inFlight.add(this);
+            var failed = false;
+            try {
+                failed = api.tryOrderCreate(BodyTemplate.ORDER, user.accessToken(), burger).statusCode() >= 400;
+            }
+            catch (Exception e) {
+                failed = true;
+            }
+            finally {
+                inFlight.remove(this);
+            }
+            var done = System.nanoTime();
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            if (failed) {
+                errors.increment();
+            }
+            record(corrected, done - intended);
+            record(uncorrected, done - sent);
+        }
+
+        void abandon(long end) {
+            if (!settled.compareAndSet(false, true)) {
+                return;
+            }
+            unfinished.increment();
+            errors.increment();
+            record(corrected, end - intended);
+            if (sent != 0) {
+                record(uncorrected, end - sent);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        var counter = new AtomicInteger();
+        return runnable -> {
+            var thread = new Thread(runnable, "order-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static void row(StringBuilder sb, String name, Histogram h) {
+        sb.append(String.format("%-28s %8d %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, h.getTotalCount(),
+                h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+                h.getMaxValue() / 1000.0));
+    }
+}
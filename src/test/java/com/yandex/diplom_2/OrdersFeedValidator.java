@@ -0,0 +1,207 @@
+package com.yandex.diplom_2;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single-pass check of a {@code /api/orders/all} body read as a token stream.
+ * Only the current order's fields and the previous {@code updatedAt} are kept,
+ * so memory does not depend on the number of orders.
+ *
+ * <p>Checks {@code success == true}, {@code total > 0}, {@code totalToday} present, and for every order:
+ * no {@code owner} and {@code price}, non-empty {@code ingredients}, positive {@code number},
+ * a known {@code status} and {@code updatedAt} strictly lower than the previous order's.
+ */
+public class OrdersFeedValidator {
+    //todo: proper naming of statuses other than "done" is not provided in API documentation
+    public static final Set<String> STATUSES = Set.of("done", "preparing", "cancelled");
+    public static final int MAX_REPORTED = 50;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final DateTimeFormatter UPDATED_AT = new DateTimeFormatterBuilder()
+            .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
+            .optionalStart().appendOffset("+HH:MM", "+00:00").optionalEnd()
+            .optionalStart().appendOffset("+HHMM", "+0000").optionalEnd()
+            .optionalStart().appendOffset("+HH", "Z").optionalEnd()
+            .toFormatter();
+
+    private final List<String> violations = new ArrayList<>();
+    private long violationCount;
+    private long orders;
+    private LocalDateTime previousUpdatedAt = LocalDateTime.MAX;
+
+    private OrdersFeedValidator() {
+    }
+
+    /**
+     * Validates the body and closes the stream.
+     */
+    public static OrdersFeedValidator validate(InputStream body) {
+        var validator = new OrdersFeedValidator();
+        try (var parser = JSON.createParser(body)) {
+            validator.root(parser);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return validator;
+    }
+
+    public long orders() {
+        return orders;
+    }
+
+    /**
+     * First {@link #MAX_REPORTED} violations.
+     */
+    public List<String> violations() {
+        return violations;
+    }
+
+    public long violationCount() {
+        return violationCount;
+    }
+
+    private void root(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            violation("body is not a JSON object");
+            return;
+        }
+        boolean success = false;
+        boolean total = false;
+        boolean totalToday = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.currentName();
+            var token = parser.nextToken();
+            switch (field) {
+                case "success":
+                    success = token == JsonToken.VALUE_TRUE;
+                    break;
+                case "orders":
+                    if (token == JsonToken.START_ARRAY) {
+                        long index = 0;
+                        for (var element = parser.nextToken(); element != null && element != JsonToken.END_ARRAY;
+                                element = parser.nextToken(), index++) {
+                            if (element == JsonToken.START_OBJECT) {
+                                order(parser, index);
+                            }
+                            else {
+                                violation("orders[" + index + "] is not an object");
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                    else {
+                        violation("orders is not an array");
+                        parser.skipChildren();
+                    }
+                    break;
+                case "total":
+                    total = token == JsonToken.VALUE_NUMBER_INT && parser.getLongValue() > 0;
+                    break;
+                case "totalToday":
+                    totalToday = token != JsonToken.VALUE_NULL;
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (!success) {
+            violation("success is not true");
+        }
+        if (!total) {
+            violation("total is not greater than 0");
+        }
+        if (!totalToday) {
+            violation("totalToday is missing");
+        }
+    }
+
+    private void order(JsonParser parser, long index) throws IOException {
+        orders++;
+        boolean ingredients = false;
+        boolean number = false;
+        boolean status = false;
+        boolean updatedAt = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.currentName();
+            var token = parser.nextToken();
+            switch (field) {
+                case "owner":
+                case "price":
+                    if (token != JsonToken.VALUE_NULL) {
+                        violation("orders[" + index + "]." + field + " is not null");
+                    }
+                    parser.skipChildren();
+                    break;
+                case "ingredients":
+                    ingredients = token == JsonToken.START_ARRAY && parser.nextToken() != JsonToken.END_ARRAY;
+                    if (ingredients) {
+                        //skip the rest of the array, the first element is already consumed
+                        parser.skipChildren();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                        }
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "number":
+                    number = token == JsonToken.VALUE_NUMBER_INT && parser.getLongValue() > 0;
+                    break;
+                case "status":
+                    status = token == JsonToken.VALUE_STRING && STATUSES.contains(parser.getText());
+                    break;
+                case "updatedAt":
+                    updatedAt = token == JsonToken.VALUE_STRING && updatedAt(parser.getText(), index);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (!ingredients) {
+            violation("orders[" + index + "].ingredients is empty");
+        }
+        if (!number) {
+            violation("orders[" + index + "].number is not greater than 0");
+        }
+        if (!status) {
+            violation("orders[" + index + "].status is not one of " + STATUSES);
+        }
+        if (!updatedAt) {
+            violation("orders[" + index + "].updatedAt is missing or not descending");
+        }
+    }
+
+    private boolean updatedAt(String value, long index) {
+        LocalDateTime current;
+        try {
+            current = LocalDateTime.parse(value, UPDATED_AT);
+        }
+        catch (DateTimeParseException e) {
+            violation("orders[" + index + "].updatedAt is not a timestamp: " + value);
+            return true;
+        }
+        var descending = current.isBefore(previousUpdatedAt);
+        previousUpdatedAt = current;
+        return descending;
+    }
+
+    private void violation(String message) {
+        if (violationCount++ < MAX_REPORTED) {
+            violations.add(message);
+        }
+    }
+}
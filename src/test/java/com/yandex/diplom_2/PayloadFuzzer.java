@@ -0,0 +1,656 @@
+package com.yandex.diplom_2;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.JSONWriter;
+
+/**
+ * Sends mutated registration and order bodies at the target and groups the answers by
+ * (endpoint, status, message). Every case is generated from {@code fuzz.seed} and its number, so the same
+ * seed sends the same bodies. Registration emails carry {@value #RUN_SLOT}, replaced by a per-run suffix
+ * only when the body is sent, so repeated runs against the same host do not collide while the generated and
+ * reported bodies stay the same. Cases that reuse one of the fixed test emails still race each other for
+ * it, so which of them gets "User already exists" can change between runs. Up to three mutations are stacked on a valid body: dropped, extra and retyped
+ * fields, unicode and oversized emails, nested, huge and invalid ingredient arrays, other JSON values
+ * instead of an object, deep nesting, broken JSON and missing or bad tokens.
+ *
+ * <p>Once all cases are done each bucket's smallest body is shrunk field by field and half by half for as
+ * long as the answer stays in the bucket, which leaves a minimal reproducer. Buckets with a 5xx, a failed
+ * request or a response slower than {@code fuzz.slowMillis} (default 1000) are flagged; the slowest case
+ * of a bucket is sent again on its own first, so waiting behind the other cases in flight does not count.
+ *
+ * <p>Run with {@code mvn -Pload test -Dload.main=com.yandex.diplom_2.PayloadFuzzer}:
+ * <ul>
+ *     <li>{@code fuzz.cases} - cases to send, default 20000</li>
+ *     <li>{@code fuzz.inFlight} - cases in flight at once on the {@link AsyncApiClient}, default 64</li>
+ *     <li>{@code fuzz.seed} - seed of the run, printed when not given</li>
+ *     <li>{@code fuzz.shrinkBudget} - requests per bucket spent on minimizing, default 200</li>
+ *     <li>{@code fuzz.hugeArray} - upper bound of the ingredients added by a huge array, default 2000;
+ *     every valid order is stored, so this is what fills the target's memory</li>
+ *     <li>{@code fuzz.longString} - upper bound of oversized strings, default 10000</li>
+ * </ul>
+ * The report goes to {@code target/fuzz-report.json}.
+ */
+public class PayloadFuzzer {
+    public static final Path REPORT = Paths.get("target", "fuzz-report.json");
+
+    static final String RUN_SLOT = "{run}";
+
+    private static final int LONG_STRING = Integer.getInteger("fuzz.longString", 10_000);
+    private static final Pattern QUOTED = Pattern.compile("\"[^\"]*\"");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+    private static final List<String> EMAILS = List.of(
+            "тест@пример.рф", "user@xn--80akhbyknj4f.xn--p1ai", "🍔@burger.io", "a@b", "@", "a@", "@b",
+            "user​@ya.ru", "user@ya.ru ", " user@ya.ru", "us er@ya.ru", "user@@ya.ru", "user\u0000@ya.ru",
+            "émile@ya.ru", "‮user@ya.ru", "\"quoted\"@ya.ru", "user@ya..ru", "USER@YA.RU", "");
+    private static final List<Object> INVALID_IDS = List.of(
+            "61c0c5a71d1f82001bdaaa6", "61c0c5a71d1f82001bdaaa6d0", "61C0C5A71D1F82001BDAAA6D", "zzzzzzzzzzzzzzzzzzzzzzzz",
+            "000000000000000000000000", "ffffffffffffffffffffffff", "", " 61c0c5a71d1f82001bdaaa6d", "61c0c5a71d1f82001bdaaa6d\n",
+            42, 6.1e23, true, JSONObject.NULL);
+    private static final List<String> EXTRA_KEYS = List.of("__proto__", "constructor", "$where", "$gt", "isAdmin",
+            "_id", "owner", "success", "accessToken", "", "\u0000", "ingredients", "email");
+
+    private final AsyncApiClient client;
+    private final String token;
+    private final List<String> ingredientIds;
+    private final long seed;
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+    private final long slowMillis = Long.getLong("fuzz.slowMillis", 1000);
+    private final int shrinkBudget = Integer.getInteger("fuzz.shrinkBudget", 200);
+    private final int hugeArray = Integer.getInteger("fuzz.hugeArray", 2000);
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<?>> deletes = ConcurrentHashMap.newKeySet();
+
+    public PayloadFuzzer(AsyncApiClient client, String token, List<String> ingredientIds, long seed) {
+        this.client = client;
+        this.token = token;
+        this.ingredientIds = ingredientIds;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        BaseTest.configureTarget();
+        var user = UserPool.shared().lease();
+        try {
+            var seed = Long.getLong("fuzz.seed", new Random().nextLong());
+            var fuzzer = new PayloadFuzzer(AsyncApiClient.forConfiguredTarget(), user.accessToken(),
+                    IngredientCatalog.get().ids(), seed);
+            var start = System.nanoTime();
+            var cases = Integer.getInteger("fuzz.cases", 20000);
+            fuzzer.run(cases, Integer.getInteger("fuzz.inFlight", 64));
+            var elapsed = System.nanoTime() - start;
+            System.out.printf("%d cases in %.3f s, %.0f cases/s, seed %d%n", cases, elapsed / 1e9,
+                    cases / (elapsed / 1e9), seed);
+            fuzzer.minimize();
+            System.out.print(fuzzer.report());
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, fuzzer.toJson().toString(2));
+        }
+        finally {
+            UserPool.shared().release(user);
+            StandInServer.stopInstance();
+        }
+    }
+
+    public void run(int cases, int inFlight) throws InterruptedException {
+        var slots = new Semaphore(inFlight);
+        for (int i = 0; i < cases; i++) {
+            var fuzzCase = generate(i);
+            slots.acquire();
+            send(fuzzCase).whenComplete((outcome, failure) -> {
+                try {
+                    var recorded = outcome != null ? outcome : Outcome.failed(failure, 0);
+                    bucket(fuzzCase, recorded).record(fuzzCase, recorded, slowMillis);
+                }
+                finally {
+                    slots.release();
+                }
+            });
+        }
+        if (!slots.tryAcquire(inFlight, 5, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Cases still running after five minutes");
+        }
+        awaitDeletes();
+    }
+
+    public Map<String, Bucket> buckets() {
+        return buckets;
+    }
+
+    /**
+     * The case number {@code index} of the run, the same for the same seed.
+     */
+    Case generate(long index) {
+        var random = new Random(seed ^ (index * 0x9E3779B97F4A7C15L));
+        var register = random.nextBoolean();
+        Object body;
+        if (register) {
+            var name = "fuzz" + Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+            body = new UserIdentity(name, name + "." + RUN_SLOT + "@ya.ru",
+                    Long.toString(random.nextLong() & Long.MAX_VALUE, 36)).toJson();
+        }
+        else {
+            var ids = new JSONArray();
+            for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                ids.put(pick(random, ingredientIds));
+            }
+            body = new JSONObject().put("ingredients", ids);
+        }
+        var fuzzCase = new Case(index, register ? "/api/auth/register" : "/api/orders", register ? "none" : "valid");
+        var mutations = register ? REGISTER_MUTATIONS : ORDER_MUTATIONS;
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            var mutation = pick(random, mutations);
+            fuzzCase.mutations.add(mutation.name);
+            body = mutation.apply(this, random, body, fuzzCase);
+        }
+        fuzzCase.body = body instanceof Broken ? ((Broken) body).text : JSONWriter.valueToString(body);
+        return fuzzCase;
+    }
+
+    CompletableFuture<Outcome> send(Case fuzzCase) {
+        String auth;
+        switch (fuzzCase.auth) {
+            case "valid":
+                auth = token;
+                break;
+            case "garbage":
+                auth = "Bearer not.a.token";
+                break;
+            case "unprefixed":
+                auth = token.substring(token.indexOf(' ') + 1);
+                break;
+            default:
+                auth = null;
+        }
+        var start = System.nanoTime();
+        return client.send("POST", fuzzCase.path, auth, fuzzCase.body.replace(RUN_SLOT, run).getBytes(StandardCharsets.UTF_8))
+                .handle((response, failure) -> {
+                    var millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    if (failure != null) {
+                        return Outcome.failed(failure, millis);
+                    }
+                    try {
+                        if (response.statusCode() == 200) {
+                            if ("/api/auth/register".equals(fuzzCase.path)) {
+                                //keep the target clean of the users the fuzzer managed to register
+                                String accessToken = response.path("accessToken");
+                                if (accessToken != null) {
+                                    delete(accessToken);
+                                }
+                            }
+                            //a created order lists all its ingredients, parsing it would cost more than the request
+                            return new Outcome(200, "", millis);
+                        }
+                        return new Outcome(response.statusCode(), message(response), millis);
+                    }
+                    catch (RuntimeException e) {
+                        //e.g. a 200 whose body is not the JSON it should be
+                        return Outcome.failed(e, millis);
+                    }
+                });
+    }
+
+    private void delete(String accessToken) {
+        var delete = client.userDelete(accessToken);
+        deletes.add(delete);
+        delete.whenComplete((response, failure) -> deletes.remove(delete));
+    }
+
+    /**
+     * Waits for the deletes of the users registered so far, failed ones included.
+     */
+    private void awaitDeletes() {
+        CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0])).exceptionally(failure -> null).join();
+    }
+
+    private static String message(AsyncApiClient.AsyncResponse response) {
+        try {
+            return response.json().optString("message", "");
+        }
+        catch (JSONException e) {
+            var body = response.body() == null ? "" : response.body();
+            return "non-JSON: " + body.substring(0, Math.min(40, body.length()));
+        }
+    }
+
+    private Bucket bucket(Case fuzzCase, Outcome outcome) {
+        return buckets.computeIfAbsent(key(fuzzCase, outcome), k -> new Bucket(fuzzCase.path, outcome));
+    }
+
+    /**
+     * Values quoted in a message and numbers in it do not make a new bucket.
+     */
+    private static String key(Case fuzzCase, Outcome outcome) {
+        var message = NUMBER.matcher(QUOTED.matcher(outcome.message).replaceAll("\"…\"")).replaceAll("N");
+        return "POST " + fuzzCase.path + " " + outcome.status + " " + message;
+    }
+
+    /**
+     * Shrinks the smallest body of every bucket for as long as the answer stays in the bucket.
+     */
+    public void minimize() {
+        for (var entry : buckets.entrySet()) {
+            var bucket = entry.getValue();
+            if (bucket.slowest != null) {
+                bucket.slowConfirmed = send(bucket.slowest).join().millis > slowMillis;
+            }
+            var current = bucket.smallest.copy();
+            var budget = shrinkBudget;
+            var shrunk = true;
+            while (shrunk && budget > 0) {
+                shrunk = false;
+                for (var candidate : candidates(current.body)) {
+                    if (budget-- <= 0) {
+                        break;
+                    }
+                    var attempt = current.copy();
+                    attempt.body = candidate;
+                    if (entry.getKey().equals(key(attempt, send(attempt).join()))) {
+                        current = attempt;
+                        shrunk = true;
+                        break;
+                    }
+                }
+            }
+            bucket.reproducer = current;
+            bucket.shrinkRequests = shrinkBudget - Math.max(budget, 0);
+        }
+        awaitDeletes();
+    }
+
+    /**
+     * Smaller variants of a body, the smallest first.
+     */
+    static List<String> candidates(String body) {
+        var candidates = new ArrayList<String>();
+        Object value;
+        try {
+            var tokener = new JSONTokener(body);
+            value = tokener.nextValue();
+            if (tokener.more()) {
+                throw new JSONException("Trailing characters");
+            }
+        }
+        catch (JSONException e) {
+            //broken JSON is shrunk as text
+            if (body.length() > 1) {
+                candidates.add(body.substring(0, body.length() / 2));
+                candidates.add(body.substring(body.length() / 2));
+                for (int i = 0; i < Math.min(body.length(), 32); i++) {
+                    candidates.add(body.substring(0, i) + body.substring(i + 1));
+                }
+            }
+            return candidates;
+        }
+        for (var smaller : smaller(value)) {
+            candidates.add(JSONWriter.valueToString(smaller));
+        }
+        candidates.sort(Comparator.comparingInt(String::length));
+        return candidates;
+    }
+
+    private static List<Object> smaller(Object value) {
+        var smaller = new ArrayList<Object>();
+        if (value instanceof JSONObject) {
+            var object = (JSONObject) value;
+            for (var key : object.keySet()) {
+                var without = copy(object);
+                without.remove(key);
+                smaller.add(without);
+                for (var part : smaller(object.get(key))) {
+                    smaller.add(copy(object).put(key, part));
+                }
+            }
+        }
+        else if (value instanceof JSONArray) {
+            var array = (JSONArray) value;
+            var length = array.length();
+            if (length > 1) {
+                smaller.add(slice(array, 0, length / 2));
+                smaller.add(slice(array, length / 2, length));
+            }
+            if (length <= 16) {
+                for (int i = 0; i < length; i++) {
+                    var without = slice(array, 0, length);
+                    without.remove(i);
+                    smaller.add(without);
+                    for (var part : smaller(array.get(i))) {
+                        smaller.add(slice(array, 0, length).put(i, part));
+                    }
+                }
+            }
+        }
+        else if (value instanceof String && ((String) value).length() > 1) {
+            var text = (String) value;
+            smaller.add(text.substring(0, text.length() / 2));
+            smaller.add(text.substring(text.length() / 2));
+        }
+        return smaller;
+    }
+
+    private static JSONObject copy(JSONObject object) {
+        var copy = new JSONObject();
+        object.keySet().forEach(key -> copy.put(key, object.get(key)));
+        return copy;
+    }
+
+    private static JSONArray slice(JSONArray array, int from, int to) {
+        var slice = new JSONArray();
+        for (int i = from; i < to; i++) {
+            slice.put(array.get(i));
+        }
+        return slice;
+    }
+
+    public String report() {
+        var sorted = new ArrayList<>(buckets.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        var sb = new StringBuilder(String.format("%-10s %8s %9s  %s%n", "flags", "cases", "max ms", "bucket / minimized reproducer"));
+        for (var entry : sorted) {
+            var bucket = entry.getValue();
+            var reproducer = bucket.reproducer != null ? bucket.reproducer : bucket.smallest;
+            sb.append(String.format("%-10s %8d %9d  %s%n", String.join(",", bucket.flags()), bucket.cases,
+                    bucket.maxMillis, entry.getKey()));
+            sb.append(String.format("%-10s %8s %9s    auth=%s %s%n", "", "", "", reproducer.auth, abbreviate(reproducer.body)));
+        }
+        return sb.toString();
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() <= 160 ? text : text.substring(0, 160) + "… (" + text.length() + " chars)";
+    }
+
+    public JSONObject toJson() {
+        var json = new JSONObject().put("seed", seed);
+        var all = new JSONArray();
+        buckets.forEach((key, bucket) -> {
+            var reproducer = bucket.reproducer != null ? bucket.reproducer : bucket.smallest;
+            all.put(new JSONObject()
+                    .put("bucket", key)
+                    .put("status", bucket.status)
+                    .put("message", bucket.message)
+                    .put("flags", bucket.flags())
+                    .put("cases", bucket.cases)
+                    .put("slowCases", bucket.slowCases)
+                    .put("slowCase", bucket.slowest == null ? null : bucket.slowest.index)
+                    .put("maxMillis", bucket.maxMillis)
+                    .put("reproducer", new JSONObject()
+                            .put("request", "POST " + reproducer.path)
+                            .put("auth", reproducer.auth)
+                            .put("body", reproducer.body)
+                            .put("case", reproducer.index)
+                            .put("mutations", reproducer.mutations)
+                            .put("shrinkRequests", bucket.shrinkRequests)));
+        });
+        return json.put("buckets", all);
+    }
+
+    private static <T> T pick(Random random, List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static String randomKey(Random random, Object body) {
+        if (!(body instanceof JSONObject) || ((JSONObject) body).isEmpty()) {
+            return null;
+        }
+        return pick(random, new ArrayList<>(((JSONObject) body).keySet()));
+    }
+
+    private static Object randomValue(Random random) {
+        switch (random.nextInt(9)) {
+            case 0:
+                return JSONObject.NULL;
+            case 1:
+                return random.nextInt();
+            case 2:
+                return random.nextDouble() * 1e300;
+            case 3:
+                return random.nextBoolean();
+            case 4:
+                return "";
+            case 5:
+                return "x".repeat(1 + random.nextInt(LONG_STRING));
+            case 6:
+                return new JSONArray().put("a").put(1);
+            case 7:
+                return new JSONObject().put("$gt", "");
+            default:
+                return "\u0000￿🍔";
+        }
+    }
+
+    /**
+     * Body that is not valid JSON any more, further mutations leave it alone.
+     */
+    private static class Broken {
+        final String text;
+
+        Broken(String text) {
+            this.text = text;
+        }
+    }
+
+    private static class Mutation {
+        final String name;
+        final Mutator mutator;
+
+        Mutation(String name, Mutator mutator) {
+            this.name = name;
+            this.mutator = mutator;
+        }
+
+        Object apply(PayloadFuzzer fuzzer, Random random, Object body, Case fuzzCase) {
+            return body instanceof Broken ? body : mutator.apply(fuzzer, random, body, fuzzCase);
+        }
+    }
+
+    private interface Mutator {
+        Object apply(PayloadFuzzer fuzzer, Random random, Object body, Case fuzzCase);
+    }
+
+    private static Mutation field(String name, BiFunction<Random, Object, Object> change) {
+        return new Mutation(name, (fuzzer, random, body, fuzzCase) -> {
+            var key = randomKey(random, body);
+            if (key != null) {
+                ((JSONObject) body).put(key, change.apply(random, ((JSONObject) body).get(key)));
+            }
+            return body;
+        });
+    }
+
+    private static final List<Mutation> COMMON_MUTATIONS = List.of(
+            new Mutation("drop field", (fuzzer, random, body, fuzzCase) -> {
+                var key = randomKey(random, body);
+                if (key != null) {
+                    ((JSONObject) body).remove(key);
+                }
+                return body;
+            }),
+            new Mutation("extra field", (fuzzer, random, body, fuzzCase) -> body instanceof JSONObject
+                    ? ((JSONObject) body).put(pick(random, EXTRA_KEYS), randomValue(random))
+                    : body),
+            field("retype field", (random, value) -> randomValue(random)),
+            new Mutation("not an object", (fuzzer, random, body, fuzzCase) -> {
+                var value = randomValue(random);
+                return value instanceof JSONObject ? new JSONArray().put(body) : value;
+            }),
+            new Mutation("deep nesting", (fuzzer, random, body, fuzzCase) -> {
+                var depth = 10 + random.nextInt(random.nextBoolean() ? 100 : 5000);
+                return new Broken("{\"a\":".repeat(depth) + JSONWriter.valueToString(body) + "}".repeat(depth));
+            }),
+            new Mutation("broken JSON", (fuzzer, random, body, fuzzCase) -> {
+                var text = JSONWriter.valueToString(body);
+                switch (random.nextInt(4)) {
+                    case 0:
+                        return new Broken(text.substring(0, random.nextInt(Math.max(1, text.length()))));
+                    case 1:
+                        return new Broken(text.replaceFirst(",", ",,"));
+                    case 2:
+                        return new Broken(text.replace('"', '\''));
+                    default:
+                        return new Broken(text + "}");
+                }
+            }));
+
+    private static final List<Mutation> REGISTER_MUTATIONS = concat(COMMON_MUTATIONS, List.of(
+            new Mutation("unicode email", (fuzzer, random, body, fuzzCase) -> body instanceof JSONObject
+                    ? ((JSONObject) body).put("email", pick(random, EMAILS))
+                    : body),
+            new Mutation("long email", (fuzzer, random, body, fuzzCase) -> body instanceof JSONObject
+                    ? ((JSONObject) body).put("email", "u".repeat(64 + random.nextInt(LONG_STRING)) + "@ya.ru")
+                    : body),
+            field("padded field", (random, value) -> " \t" + value + "\n ")));
+
+    private static final List<Mutation> ORDER_MUTATIONS = concat(COMMON_MUTATIONS, List.of(
+            new Mutation("nested ingredient", (fuzzer, random, body, fuzzCase) -> {
+                var ids = ingredients(body);
+                if (ids != null && !ids.isEmpty()) {
+                    var i = random.nextInt(ids.length());
+                    ids.put(i, new JSONArray().put(ids.get(i)));
+                }
+                return body;
+            }),
+            new Mutation("huge ingredients", (fuzzer, random, body, fuzzCase) -> {
+                var ids = ingredients(body);
+                if (ids != null) {
+                    for (int i = random.nextInt(fuzzer.hugeArray); i > 0; i--) {
+                        ids.put(pick(random, fuzzer.ingredientIds));
+                    }
+                }
+                return body;
+            }),
+            new Mutation("invalid id", (fuzzer, random, body, fuzzCase) -> {
+                var ids = ingredients(body);
+                if (ids != null && !ids.isEmpty()) {
+                    ids.put(random.nextInt(ids.length()), pick(random, INVALID_IDS));
+                }
+                return body;
+            }),
+            new Mutation("empty ingredients", (fuzzer, random, body, fuzzCase) -> body instanceof JSONObject
+                    ? ((JSONObject) body).put("ingredients", new JSONArray())
+                    : body),
+            new Mutation("auth", (fuzzer, random, body, fuzzCase) -> {
+                fuzzCase.auth = pick(random, List.of("none", "garbage", "unprefixed"));
+                return body;
+            })));
+
+    private static JSONArray ingredients(Object body) {
+        return body instanceof JSONObject ? ((JSONObject) body).optJSONArray("ingredients") : null;
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second) {
+        var all = new ArrayList<>(first);
+        all.addAll(second);
+        return List.copyOf(all);
+    }
+
+    static class Case {
+        final long index;
+        final String path;
+        final List<String> mutations = new ArrayList<>();
+        String auth;
+        String body;
+
+        Case(long index, String path, String auth) {
+            this.index = index;
+            this.path = path;
+            this.auth = auth;
+        }
+
+        Case copy() {
+            var copy = new Case(index, path, auth);
+            copy.mutations.addAll(mutations);
+            copy.body = body;
+            return copy;
+        }
+    }
+
+    static class Outcome {
+        final int status;
+        final String message;
+        final long millis;
+
+        Outcome(int status, String message, long millis) {
+            this.status = status;
+            this.message = message;
+            this.millis = millis;
+        }
+
+        /**
+         * A request that failed or whose answer could not be handled, bucketed by the type of the failure.
+         */
+        static Outcome failed(Throwable failure, long millis) {
+            var cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            return new Outcome(-1, cause.getClass().getSimpleName(), millis);
+        }
+    }
+
+    public static class Bucket {
+        final String path;
+        final int status;
+        final String message;
+        long cases;
+        long slowCases;
+        long maxMillis;
+        Case smallest;
+        Case slowest;
+        boolean slowConfirmed;
+        Case reproducer;
+        int shrinkRequests;
+
+        Bucket(String path, Outcome first) {
+            this.path = path;
+            this.status = first.status;
+            this.message = first.message;
+        }
+
+        synchronized void record(Case fuzzCase, Outcome outcome, long slowMillis) {
+            cases++;
+            maxMillis = Math.max(maxMillis, outcome.millis);
+            if (outcome.millis > slowMillis) {
+                slowCases++;
+            }
+            if (outcome.millis == maxMillis) {
+                slowest = outcome.millis > slowMillis ? fuzzCase : null;
+            }
+            //ties go to the lower case number, not to whichever answer came first
+            if (smallest == null || fuzzCase.body.length() < smallest.body.length()
+                    || fuzzCase.body.length() == smallest.body.length() && fuzzCase.index < smallest.index) {
+                smallest = fuzzCase;
+            }
+        }
+
+        public List<String> flags() {
+            var flags = new ArrayList<String>();
+            if (status >= 500) {
+                flags.add("5xx");
+            }
+            if (status < 0) {
+                flags.add("failed");
+            }
+            if (slowConfirmed) {
+                flags.add("slow");
+            }
+            return flags;
+        }
+    }
+}
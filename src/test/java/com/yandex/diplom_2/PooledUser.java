@@ -0,0 +1,26 @@
+package com.yandex.diplom_2;
+
+/**
+ * A registered user handed out by {@link UserPool}. Its tokens live in {@link TokenManager},
+ * so a user that stays in the pool for longer than the token lifetime is refreshed, not re-logged in.
+ */
+public class PooledUser {
+    public final UserIdentity identity;
+    private final TokenManager tokens;
+
+    public PooledUser(UserIdentity identity, TokenManager tokens) {
+        this.identity = identity;
+        this.tokens = tokens;
+    }
+
+    /**
+     * {@code Authorization} header value, {@code "Bearer ..."}.
+     */
+    public String accessToken() {
+        return tokens.accessToken(identity.email);
+    }
+
+    public String refreshToken() {
+        return tokens.refreshToken(identity.email);
+    }
+}
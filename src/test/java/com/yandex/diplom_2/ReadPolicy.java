@@ -0,0 +1,254 @@
+package com.yandex.diplom_2;
+
+import io.restassured.response.Response;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.json.JSONObject;
+
+/**
+ * Retries and hedging for the idempotent reads of {@link BaseTest}. A read failing with an exception,
+ * a 5xx or a 429 is retried up to {@code retry.attempts} times (default 2) after a full-jitter backoff
+ * of {@code retry.baseMillis} (default 50) doubling up to {@code retry.maxMillis} (default 1000).
+ *
+ * <p>Retries draw on a budget shared by all endpoints: each call adds {@code retry.ratio} (default 0.2)
+ * of a token, each retry or hedge takes one, and there are 10 to start with, so a failing backend sees
+ * at most about a fifth more requests instead of three times as many.
+ *
+ * <p>With {@code -Dhedge=true} a second request is sent when the first has not answered within the
+ * {@code hedge.percentile} (default 95) of the endpoint's {@link LatencyRegistry} histogram, once it
+ * has 20 samples, and whichever answers first is used. Hedged attempts run on a pool thread, so they
+ * are missing from the {@link ExchangeLogFilter} of the test.
+ */
+public class ReadPolicy {
+    public static final Path REPORT = Paths.get("target", "read-policy.json");
+
+    private static final int ATTEMPTS = Integer.getInteger("retry.attempts", 2);
+    private static final long BASE_MILLIS = Long.getLong("retry.baseMillis", 50);
+    private static final long MAX_MILLIS = Long.getLong("retry.maxMillis", 1000);
+    private static final long TOKEN = 1000;
+    private static final long DEPOSIT = Math.round(Double.parseDouble(System.getProperty("retry.ratio", "0.2")) * TOKEN);
+    private static final long RESERVE = 10 * TOKEN;
+    private static final long CAPACITY = 100 * TOKEN;
+    private static final boolean HEDGE = Boolean.getBoolean("hedge");
+    private static final double HEDGE_PERCENTILE = Double.parseDouble(System.getProperty("hedge.percentile", "95"));
+    private static final long HEDGE_MIN_SAMPLES = 20;
+
+    private static final AtomicLong BUDGET = new AtomicLong(RESERVE);
+    private static final Map<String, Counters> COUNTERS = new ConcurrentSkipListMap<>();
+    private static final ExecutorService HEDGES = Executors.newCachedThreadPool(r -> {
+        var thread = new Thread(r, "hedged-read");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ReadPolicy() {
+    }
+
+    /**
+     * Runs an idempotent read of {@code endpoint}, e.g. {@code "GET /api/orders"}, under the policy.
+     */
+    public static Response read(String endpoint, Supplier<Response> request) {
+        var counters = COUNTERS.computeIfAbsent(endpoint, e -> new Counters());
+        counters.calls.increment();
+        BUDGET.accumulateAndGet(DEPOSIT, (budget, deposit) -> Math.min(CAPACITY, budget + deposit));
+        for (int attempt = 0; ; attempt++) {
+            Response response = null;
+            Exception failure = null;
+            try {
+                response = HEDGE ? hedged(endpoint, request, counters) : request.get();
+            }
+            catch (Exception e) {
+                //RestAssured rethrows I/O failures such as read timeouts undeclared
+                failure = e;
+            }
+            if (failure == null && !retryable(response.statusCode())) {
+                return response;
+            }
+            if (failure != null && isTimeout(failure)) {
+                counters.timeouts.increment();
+            }
+            if (attempt >= ATTEMPTS || !withdraw()) {
+                if (attempt < ATTEMPTS) {
+                    counters.budgetExhausted.increment();
+                }
+                counters.failures.increment();
+                if (failure != null) {
+                    throw ReadPolicy.<RuntimeException>rethrow(failure);
+                }
+                return response;
+            }
+            counters.retries.increment();
+            sleep(ThreadLocalRandom.current().nextLong(Math.min(MAX_MILLIS, BASE_MILLIS << attempt) + 1));
+        }
+    }
+
+    private static Response hedged(String endpoint, Supplier<Response> request, Counters counters) {
+        var histogram = LatencyRegistry.histograms().get(endpoint);
+        if (histogram == null || histogram.getTotalCount() < HEDGE_MIN_SAMPLES) {
+            return request.get();
+        }
+        var delayMicros = histogram.getValueAtPercentile(HEDGE_PERCENTILE);
+        var first = CompletableFuture.supplyAsync(request, HEDGES);
+        try {
+            return first.get(delayMicros, TimeUnit.MICROSECONDS);
+        }
+        catch (TimeoutException e) {
+            if (!withdraw()) {
+                counters.budgetExhausted.increment();
+                return await(first);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + endpoint, e);
+        }
+        catch (ExecutionException e) {
+            throw ReadPolicy.<RuntimeException>rethrow(e.getCause());
+        }
+        counters.hedges.increment();
+        var second = CompletableFuture.supplyAsync(request, HEDGES);
+        try {
+            CompletableFuture.anyOf(first, second).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + endpoint, e);
+        }
+        catch (ExecutionException e) {
+            //one of them failed, the other one decides
+        }
+        if (second.isDone() && !second.isCompletedExceptionally()) {
+            counters.hedgeWins.increment();
+            return second.join();
+        }
+        if (first.isDone() && !first.isCompletedExceptionally()) {
+            return first.join();
+        }
+        return await(first.isCompletedExceptionally() ? second : first);
+    }
+
+    private static Response await(CompletableFuture<Response> future) {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a read", e);
+        }
+        catch (ExecutionException e) {
+            throw ReadPolicy.<RuntimeException>rethrow(e.getCause());
+        }
+    }
+
+    /**
+     * Throws the failure of an attempt as it is, checked or not, like RestAssured does.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T rethrow(Throwable failure) throws T {
+        throw (T) failure;
+    }
+
+    private static boolean retryable(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    private static boolean isTimeout(Throwable failure) {
+        for (var cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean withdraw() {
+        while (true) {
+            var budget = BUDGET.get();
+            if (budget < TOKEN) {
+                return false;
+            }
+            if (BUDGET.compareAndSet(budget, budget - TOKEN)) {
+                return true;
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted backing off", e);
+        }
+    }
+
+    public static void reset() {
+        COUNTERS.clear();
+        BUDGET.set(RESERVE);
+    }
+
+    public static String report() {
+        var sb = new StringBuilder(String.format("%-28s %8s %8s %8s %8s %8s %8s %8s%n",
+                "read policy", "calls", "retries", "timeout", "hedges", "won", "no-budg", "failed"));
+        COUNTERS.forEach((endpoint, c) -> sb.append(String.format("%-28s %8d %8d %8d %8d %8d %8d %8d%n",
+                endpoint, c.calls.sum(), c.retries.sum(), c.timeouts.sum(), c.hedges.sum(), c.hedgeWins.sum(),
+                c.budgetExhausted.sum(), c.failures.sum())));
+        return sb.toString();
+    }
+
+    public static JSONObject toJson() {
+        var json = new JSONObject();
+        COUNTERS.forEach((endpoint, c) -> json.put(endpoint, new JSONObject()
+                .put("calls", c.calls.sum())
+                .put("retries", c.retries.sum())
+                .put("timeouts", c.timeouts.sum())
+                .put("hedges", c.hedges.sum())
+                .put("hedgeWins", c.hedgeWins.sum())
+                .put("budgetExhausted", c.budgetExhausted.sum())
+                .put("failures", c.failures.sum())));
+        return json;
+    }
+
+    /**
+     * Writes {@link #REPORT} if any read went through the policy.
+     */
+    public static void publish() {
+        if (COUNTERS.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(REPORT.getParent());
+            Files.writeString(REPORT, toJson().toString(2));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder hedges = new LongAdder();
+        final LongAdder hedgeWins = new LongAdder();
+        final LongAdder budgetExhausted = new LongAdder();
+        final LongAdder failures = new LongAdder();
+    }
+}
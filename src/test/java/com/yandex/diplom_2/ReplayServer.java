@@ -0,0 +1,124 @@
+package com.yandex.diplom_2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpHeaders;
+import org.json.JSONObject;
+
+/**
+ * Serves a recording made by {@link CaptureFilter} on a loopback port, selected with
+ * {@code -Dstellar.target=replay:target/traffic}. A request is answered with the responses recorded
+ * under its {@link NormalizationRules key} in recording order, starting over after the last one;
+ * an unknown key gets a 404 naming it. Bodies are written from the mapped log, never loaded whole.
+ */
+public class ReplayServer {
+    private static volatile ReplayServer instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final TrafficLog.Recording recording;
+    private final NormalizationRules rules;
+    private final Map<String, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the JVM-wide server for the recording at {@code base}, starting it on first use.
+     */
+    public static ReplayServer instance(Path base) {
+        var current = instance;
+        if (current == null) {
+            synchronized (ReplayServer.class) {
+                current = instance;
+                if (current == null) {
+                    current = instance = new ReplayServer(TrafficLog.open(base), NormalizationRules.load(), 0);
+                }
+            }
+        }
+        return current;
+    }
+
+    public ReplayServer(TrafficLog.Recording recording, NormalizationRules rules, int port) {
+        this.recording = recording;
+        this.rules = rules;
+        try {
+            server = StandInServer.bindLoopback(port);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Unable to start replay server", e);
+        }
+        executor = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "replay-" + server.getAddress().getPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        //the dispatcher inherits daemon status from the thread that starts it, so it never keeps the JVM alive
+        var starter = new Thread(server::start);
+        starter.setDaemon(true);
+        starter.start();
+        try {
+            starter.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted starting replay server", e);
+        }
+    }
+
+    public String baseUri() {
+        return "http://" + server.getAddress().getHostString();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var uri = exchange.getRequestURI();
+        var path = uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+        var key = rules.key(exchange.getRequestMethod(), path,
+                exchange.getRequestHeaders().containsKey(HttpHeaders.AUTHORIZATION),
+                exchange.getRequestHeaders().containsKey(HttpHeaders.IF_NONE_MATCH),
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        var entries = recording.entries(key);
+        if (entries.isEmpty()) {
+            var bytes = new JSONObject().put("success", false).put("message", "Not recorded: " + key)
+                    .toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(404, bytes.length);
+            try (var out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+            return;
+        }
+        var next = cursors.computeIfAbsent(key, k -> new AtomicInteger()).getAndIncrement();
+        var entry = entries.get(Math.floorMod(next, entries.size()));
+        if (!entry.contentType.isEmpty()) {
+            exchange.getResponseHeaders().set("Content-Type", entry.contentType);
+        }
+        if (!entry.etag.isEmpty()) {
+            exchange.getResponseHeaders().set(HttpHeaders.ETAG, entry.etag);
+        }
+        exchange.sendResponseHeaders(entry.status, entry.length == 0 ? -1 : entry.length);
+        try (var out = Channels.newChannel(exchange.getResponseBody())) {
+            var body = recording.body(entry);
+            while (body.hasRemaining()) {
+                out.write(body);
+            }
+        }
+    }
+}
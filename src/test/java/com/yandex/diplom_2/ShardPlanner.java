@@ -0,0 +1,217 @@
+package com.yandex.diplom_2;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Splits the test methods into {@code shard.count} surefire include files with balanced predicted duration.
+ *
+ * <p>{@code plan}, run once by the {@code shard-plan} Maven profile, only reads {@link #HISTORY} and writes
+ * every {@code target/shards/shard-i.txt}; the lanes of the {@code shard} profile all use those same files,
+ * so each test runs in exactly one lane. {@code merge}, run by the {@code shard-merge} profile after every
+ * lane has finished and their Allure results are collected in {@link #RESULTS}, folds the new durations
+ * into {@link #HISTORY} as an exponential moving average, so the history survives {@code mvn clean}.
+ * The file is machine specific and ignored by git; CI keeps it between runs with its cache.
+ * Methods are assigned longest-processing-time first: each goes to the shard with the least predicted
+ * time so far. Methods without history are estimated with the median of the known ones.
+ */
+public class ShardPlanner {
+    public static final Path HISTORY = Paths.get(".test-timings.json");
+    public static final Path RESULTS = Paths.get("target", "allure-results");
+    public static final Path SHARDS = Paths.get("target", "shards");
+    public static final Path TEST_CLASSES = Paths.get("target", "test-classes");
+
+    static final double SMOOTHING = 0.3;
+    static final String NO_TESTS = "com/yandex/diplom_2/NoTestsInThisShard.java";
+
+    private static final Pattern TEST_CLASS = Pattern.compile("(Test[^$]*|[^$]*(Test|Tests|TestCase))\\.class");
+    private static final Pattern PARAMETERS = Pattern.compile("\\[.*]$");
+
+    public static void main(String[] args) throws IOException {
+        var step = args.length == 0 ? "plan" : args[0];
+        if ("merge".equals(step)) {
+            var history = loadHistory();
+            mergeResults(history);
+            Files.writeString(HISTORY, history.toString(2));
+        }
+        else if ("plan".equals(step)) {
+            writePlan(Integer.getInteger("shard.count", 2), loadHistory());
+        }
+        else {
+            throw new IllegalArgumentException("Unknown step " + step + ", expected plan or merge");
+        }
+    }
+
+    static void writePlan(int count, JSONObject history) throws IOException {
+        var parameterized = new HashSet<String>();
+        var plan = plan(discover(parameterized), history, count);
+        Files.createDirectories(SHARDS);
+        for (int i = 0; i < plan.size(); i++) {
+            var shard = plan.get(i);
+            var includes = shard.tests.stream()
+                    .map(test -> includePattern(test, parameterized))
+                    .collect(Collectors.toList());
+            if (includes.isEmpty()) {
+                //surefire falls back to its default includes for an empty file and would run every test
+                includes.add(NO_TESTS);
+            }
+            Files.write(SHARDS.resolve("shard-" + i + ".txt"), includes);
+            System.out.printf("shard %d: %d tests, predicted %.1f s%n", i, shard.tests.size(), shard.millis / 1000);
+        }
+    }
+
+    /**
+     * Longest-processing-time-first assignment of {@code class#method} keys to {@code count} shards.
+     */
+    public static List<Shard> plan(List<String> tests, JSONObject history, int count) {
+        var known = tests.stream().filter(history::has)
+                .mapToDouble(t -> history.getJSONObject(t).getDouble("millis"))
+                .sorted().toArray();
+        var estimate = known.length == 0 ? 1000.0 : known[known.length / 2];
+
+        var shards = new ArrayList<Shard>();
+        var lanes = new PriorityQueue<Shard>(Comparator.<Shard>comparingDouble(s -> s.millis).thenComparingInt(s -> s.index));
+        for (int i = 0; i < count; i++) {
+            var shard = new Shard(i);
+            shards.add(shard);
+            lanes.add(shard);
+        }
+        var ordered = new ArrayList<>(tests);
+        ordered.sort(Comparator.<String>comparingDouble(t -> -duration(history, t, estimate))
+                .thenComparing(Comparator.naturalOrder()));
+        for (var test : ordered) {
+            var shard = lanes.poll();
+            shard.tests.add(test);
+            shard.millis += duration(history, test, estimate);
+            lanes.add(shard);
+        }
+        return shards;
+    }
+
+    static JSONObject loadHistory() throws IOException {
+        return Files.exists(HISTORY) ? new JSONObject(Files.readString(HISTORY)) : new JSONObject();
+    }
+
+    /**
+     * Takes the latest result of every test (parameterized rows are summed under their method)
+     * and folds it into the history unless the history has already seen it.
+     */
+    static void mergeResults(JSONObject history) throws IOException {
+        if (!Files.isDirectory(RESULTS)) {
+            return;
+        }
+        var latest = new HashMap<String, long[]>();
+        try (var files = Files.list(RESULTS)) {
+            for (var file : (Iterable<Path>) files.filter(f -> f.toString().endsWith("-result.json"))::iterator) {
+                var result = new JSONObject(Files.readString(file));
+                var labels = labels(result);
+                if (!labels.containsKey("testClass") || !result.has("start") || !result.has("stop")) {
+                    continue;
+                }
+                var name = labels.get("testClass") + "#" + labels.get("testMethod");
+                var timing = new long[] {result.getLong("stop") - result.getLong("start"), result.getLong("stop")};
+                latest.merge(name, timing, (a, b) -> a[1] >= b[1] ? a : b);
+            }
+        }
+        var runs = new TreeMap<String, long[]>();
+        latest.forEach((name, timing) -> runs.merge(PARAMETERS.matcher(name).replaceAll(""), timing,
+                (a, b) -> new long[] {a[0] + b[0], Math.max(a[1], b[1])}));
+        runs.forEach((test, timing) -> {
+            var entry = history.optJSONObject(test);
+            if (entry == null) {
+                history.put(test, new JSONObject().put("millis", (double) timing[0]).put("lastStop", timing[1]));
+            }
+            else if (entry.getLong("lastStop") < timing[1]) {
+                entry.put("millis", SMOOTHING * timing[0] + (1 - SMOOTHING) * entry.getDouble("millis"))
+                        .put("lastStop", timing[1]);
+            }
+        });
+    }
+
+    /**
+     * {@code class#method} of every JUnit 4 test surefire would pick up with its default includes;
+     * names of {@link Parameterized} classes are added to {@code parameterized}.
+     */
+    static List<String> discover(Set<String> parameterized) throws IOException {
+        var tests = new ArrayList<String>();
+        try (var files = Files.walk(TEST_CLASSES)) {
+            for (var file : (Iterable<Path>) files.filter(f -> TEST_CLASS.matcher(f.getFileName().toString()).matches())::iterator) {
+                var name = TEST_CLASSES.relativize(file).toString().replace(file.getFileSystem().getSeparator(), ".");
+                Class<?> type;
+                try {
+                    type = Class.forName(name.substring(0, name.length() - ".class".length()), false,
+                            Thread.currentThread().getContextClassLoader());
+                }
+                catch (ClassNotFoundException e) {
+                    continue;
+                }
+                if (Modifier.isAbstract(type.getModifiers())) {
+                    continue;
+                }
+                var runWith = type.getAnnotation(RunWith.class);
+                if (runWith != null && Parameterized.class.isAssignableFrom(runWith.value())) {
+                    parameterized.add(type.getName());
+                }
+                for (var method : type.getMethods()) {
+                    if (method.isAnnotationPresent(Test.class)) {
+                        tests.add(type.getName() + "#" + method.getName());
+                    }
+                }
+            }
+        }
+        tests.sort(Comparator.naturalOrder());
+        return tests;
+    }
+
+    private static Map<String, String> labels(JSONObject result) {
+        var labels = new HashMap<String, String>();
+        var array = result.optJSONArray("labels");
+        for (int i = 0; array != null && i < array.length(); i++) {
+            var label = array.getJSONObject(i);
+            labels.put(label.optString("name"), label.optString("value"));
+        }
+        return labels;
+    }
+
+    private static double duration(JSONObject history, String test, double estimate) {
+        var entry = history.optJSONObject(test);
+        return entry == null ? estimate : entry.getDouble("millis");
+    }
+
+    /**
+     * Surefire include line, {@code [*} matches the rows of parameterized tests such as {@code testCreate[0]}.
+     */
+    private static String includePattern(String test, Set<String> parameterized) {
+        var hash = test.indexOf('#');
+        var type = test.substring(0, hash);
+        return type.replace('.', '/') + ".java" + test.substring(hash) + (parameterized.contains(type) ? "[*" : "");
+    }
+
+    public static class Shard {
+        public final int index;
+        public final List<String> tests = new ArrayList<>();
+        public double millis;
+
+        Shard(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,652 @@
+package com.yandex.diplom_2;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * In-process stand-in for the Stellar Burgers API.
+ * Serves the endpoints used by the suite from memory on a loopback port and
+ * reproduces the status codes and messages the tests assert on.
+ * Started lazily, once per JVM, see {@link #instance()}.
+ * Access tokens live {@link #ACCESS_TOKEN_TTL_SECONDS}, {@code -Dstand.tokenTtl} shortens them
+ * to exercise token refresh.
+ */
+public class StandInServer {
+    public static final long ACCESS_TOKEN_TTL_SECONDS = Long.getLong("stand.tokenTtl", 20 * 60);
+    public static final int ALL_ORDERS_LIMIT = 50;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter
+            .ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+$");
+    private static final Pattern OBJECT_ID = Pattern.compile("^[0-9a-f]{24}$");
+
+    private static volatile StandInServer instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] secret = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+
+    private final Map<String, Ingredient> ingredients = new LinkedHashMap<>();
+    private final Reply ingredientsReply;
+    private final Map<String, User> usersById = new ConcurrentHashMap<>();
+    private final Map<String, User> usersByEmail = new ConcurrentHashMap<>();
+    private final Map<String, String> refreshTokens = new ConcurrentHashMap<>();
+
+    private final Deque<Order> recentOrders = new ArrayDeque<>();
+    private final AtomicInteger orderNumber = new AtomicInteger(40000);
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicInteger totalToday = new AtomicInteger();
+    private final AtomicLong lastTimestamp = new AtomicLong();
+
+    /**
+     * Returns the JVM-wide server, starting it on first use.
+     */
+    public static StandInServer instance() {
+        var current = instance;
+        if (current == null) {
+            synchronized (StandInServer.class) {
+                current = instance;
+                if (current == null) {
+                    current = instance = new StandInServer(0);
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Stops the JVM-wide server if it was started, its dispatcher thread would otherwise keep the JVM alive.
+     * The {@link UserPool} is torn down first, while the target still answers.
+     */
+    public static synchronized void stopInstance() {
+        UserPool.closeShared();
+        if (instance != null) {
+            instance.stop();
+            instance = null;
+        }
+    }
+
+    /**
+     * Binds a JDK HTTP server to the loopback interface with Nagle's algorithm off.
+     * The JDK server leaves it on by default, so every small response waits for the client's
+     * delayed ACK, about 40 ms per POST. The switch is read once, when the first server is created;
+     * {@code -Dsun.net.httpserver.nodelay=false} restores the JDK behaviour.
+     */
+    static HttpServer bindLoopback(int port) throws IOException {
+        System.getProperties().putIfAbsent("sun.net.httpserver.nodelay", "true");
+        return HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    }
+
+    public StandInServer(int port) {
+        try {
+            server = bindLoopback(port);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Unable to start stand-in server", e);
+        }
+        seedIngredients();
+        seedOrders();
+        var data = new JSONArray();
+        ingredients.values().forEach(i -> data.put(i.toJson()));
+        var catalog = new JSONObject().put("success", true).put("data", data);
+        //the catalog never changes, so its ETag is stable for the lifetime of the server
+        ingredientsReply = new Reply(200, catalog, "W/\"" + Integer.toHexString(catalog.toString().hashCode()) + "\"");
+        executor = Executors.newCachedThreadPool(r -> {
+            var thread = new Thread(r, "stand-in-" + server.getAddress().getPort());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public String baseUri() {
+        return "http://" + server.getAddress().getHostString();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        Reply reply;
+        try {
+            reply = route(exchange.getRequestMethod(), exchange.getRequestURI().getPath(),
+                    exchange.getRequestHeaders().getFirst("Authorization"),
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        }
+        catch (RuntimeException e) {
+            reply = new Reply(500, error(e.toString()));
+        }
+        if (reply.etag != null) {
+            exchange.getResponseHeaders().set("ETag", reply.etag);
+            if (reply.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+        }
+        var bytes = reply.body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(reply.code, bytes.length);
+        try (var out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    Reply route(String method, String path, String authorization, String rawBody) {
+        if (path.length() > 1 && path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        JSONObject body;
+        try {
+            body = rawBody.isBlank() ? new JSONObject() : new JSONObject(rawBody);
+        }
+        catch (JSONException e) {
+            return new Reply(400, error("Invalid JSON"));
+        }
+        switch (method + " " + path) {
+            case "POST /api/auth/register":
+                return register(body);
+            case "POST /api/auth/login":
+                return login(body);
+            case "POST /api/auth/logout":
+                return logout(body);
+            case "POST /api/auth/token":
+                return token(body);
+            case "GET /api/auth/user":
+                return withUser(authorization, this::userInfo);
+            case "PATCH /api/auth/user":
+                return withUser(authorization, user -> userUpdate(user, body));
+            case "DELETE /api/auth/user":
+                return withUser(authorization, this::userDelete);
+            case "POST /api/password-reset":
+                return passwordResetRequest(body);
+            case "POST /api/password-reset/reset":
+                return passwordReset(body);
+            case "GET /api/ingredients":
+                return ingredientsList();
+            case "GET /api/orders":
+                return withUser(authorization, this::userOrders);
+            case "POST /api/orders":
+                return orderCreate(authorization, body);
+            case "GET /api/orders/all":
+                return allOrders();
+            default:
+                return new Reply(404, error("Not found"));
+        }
+    }
+
+    private Reply register(JSONObject body) {
+        var email = body.optString("email", null);
+        var name = body.optString("name", null);
+        var password = body.optString("password", null);
+        if (email == null || name == null || password == null) {
+            return new Reply(403, error("Email, password and name are required fields"));
+        }
+        if (!EMAIL.matcher(email).matches()) {
+            return new Reply(500, error("User validation failed: email: invalid email"));
+        }
+        var now = timestamp();
+        var user = new User(objectId(), email, name, password, now);
+        if (usersByEmail.putIfAbsent(email, user) != null) {
+            return new Reply(403, error("User already exists"));
+        }
+        usersById.put(user.id, user);
+        return authorized(user);
+    }
+
+    private Reply login(JSONObject body) {
+        var user = usersByEmail.get(body.optString("email", ""));
+        if (user == null || !user.password.equals(body.optString("password", null))) {
+            return new Reply(401, error("email or password are incorrect"));
+        }
+        return authorized(user);
+    }
+
+    private Reply logout(JSONObject body) {
+        var token = body.optString("token", null);
+        if (token == null || refreshTokens.remove(token) == null) {
+            return new Reply(404, error("Token required"));
+        }
+        return new Reply(200, message("Successful logout"));
+    }
+
+    /**
+     * Refresh tokens are single use: the old one is dropped and a new pair issued.
+     */
+    private Reply token(JSONObject body) {
+        var userId = refreshTokens.remove(body.optString("token", ""));
+        var user = userId == null ? null : usersById.get(userId);
+        if (user == null) {
+            return new Reply(401, error("Token is invalid"));
+        }
+        return authorized(user);
+    }
+
+    private Reply userInfo(User user) {
+        return new Reply(200, new JSONObject().put("success", true).put("user", user.toJson()));
+    }
+
+    private Reply userUpdate(User user, JSONObject body) {
+        synchronized (user) {
+            var email = body.optString("email", user.email);
+            if (!email.equals(user.email)) {
+                if (usersByEmail.putIfAbsent(email, user) != null) {
+                    return new Reply(403, error("User with such email already exists"));
+                }
+                usersByEmail.remove(user.email);
+                user.email = email;
+            }
+            user.name = body.optString("name", user.name);
+            user.password = body.optString("password", user.password);
+            user.updatedAt = timestamp();
+        }
+        return userInfo(user);
+    }
+
+    private Reply userDelete(User user) {
+        usersById.remove(user.id);
+        usersByEmail.remove(user.email, user);
+        refreshTokens.values().removeIf(user.id::equals);
+        return new Reply(202, message("User successfully removed"));
+    }
+
+    private Reply passwordResetRequest(JSONObject body) {
+        if (!body.has("email")) {
+            return new Reply(400, error("Email is required"));
+        }
+        return new Reply(200, message("Reset email sent"));
+    }
+
+    private Reply passwordReset(JSONObject body) {
+        if (!body.has("password") || !body.has("token")) {
+            return new Reply(400, error("Password and token are required"));
+        }
+        return new Reply(200, message("Password successfully reset"));
+    }
+
+    private Reply ingredientsList() {
+        return ingredientsReply;
+    }
+
+    private Reply userOrders(User user) {
+        var orders = new JSONArray();
+        synchronized (user.orders) {
+            user.orders.forEach(o -> orders.put(o.toShortJson()));
+        }
+        return new Reply(200, new JSONObject().put("success", true)
+                .put("orders", orders)
+                .put("total", orders.length())
+                .put("totalToday", orders.length()));
+    }
+
+    private Reply orderCreate(String authorization, JSONObject body) {
+        User owner = null;
+        if (authorization != null) {
+            var auth = authenticate(authorization);
+            if (auth.reply != null) {
+                return auth.reply;
+            }
+            owner = auth.user;
+        }
+        var ids = body.optJSONArray("ingredients");
+        if (ids == null || ids.isEmpty()) {
+            return new Reply(400, error("Ingredient ids must be provided"));
+        }
+        var items = new ArrayList<Ingredient>();
+        for (var id : ids) {
+            if (!(id instanceof String)) {
+                return new Reply(403, error("Ingredient ids must be strings"));
+            }
+            if (!OBJECT_ID.matcher((String) id).matches()) {
+                return new Reply(500, error("Cast to ObjectId failed for value \"" + id + "\""));
+            }
+            var ingredient = ingredients.get(id);
+            if (ingredient == null) {
+                return new Reply(400, error("One or more ids provided are incorrect"));
+            }
+            items.add(ingredient);
+        }
+        Order order;
+        //number and timestamp are taken under the lock, concurrent orders would reach the feed out of order otherwise
+        synchronized (recentOrders) {
+            order = new Order(objectId(), orderNumber.incrementAndGet(), items, owner, timestamp());
+            store(order);
+        }
+        return new Reply(200, new JSONObject().put("success", true)
+                .put("name", order.name)
+                .put("order", order.toFullJson()));
+    }
+
+    private Reply allOrders() {
+        var orders = new JSONArray();
+        synchronized (recentOrders) {
+            recentOrders.forEach(o -> orders.put(o.toShortJson()));
+        }
+        return new Reply(200, new JSONObject().put("success", true)
+                .put("orders", orders)
+                .put("total", total.get())
+                .put("totalToday", totalToday.get()));
+    }
+
+    private void store(Order order) {
+        synchronized (recentOrders) {
+            recentOrders.addFirst(order);
+            if (recentOrders.size() > ALL_ORDERS_LIMIT) {
+                recentOrders.removeLast();
+            }
+        }
+        total.incrementAndGet();
+        totalToday.incrementAndGet();
+        if (order.owner != null) {
+            synchronized (order.owner.orders) {
+                order.owner.orders.add(order);
+            }
+        }
+    }
+
+    private Reply withUser(String authorization, Function<User, Reply> action) {
+        var auth = authenticate(authorization);
+        return auth.reply != null ? auth.reply : action.apply(auth.user);
+    }
+
+    /**
+     * Mirrors the backend: the token is the second word of the header,
+     * its claims are checked before the signature.
+     */
+    private Auth authenticate(String authorization) {
+        var parts = authorization == null ? new String[0] : authorization.split(" ");
+        if (parts.length < 2) {
+            return new Auth(new Reply(401, error("You should be authorised")));
+        }
+        var jwt = parts[1].split("\\.");
+        JSONObject claims;
+        try {
+            if (jwt.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            claims = new JSONObject(new String(Base64.getUrlDecoder().decode(jwt[1]), StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException | JSONException e) {
+            return new Auth(new Reply(403, error("jwt malformed")));
+        }
+        if (claims.optLong("exp", Long.MAX_VALUE) <= Instant.now().getEpochSecond()) {
+            return new Auth(new Reply(403, error("jwt expired")));
+        }
+        if (!sign(jwt[0] + "." + jwt[1]).equals(jwt[2])) {
+            return new Auth(new Reply(403, error("invalid signature")));
+        }
+        var user = usersById.get(claims.optString("id"));
+        if (user == null) {
+            return new Auth(new Reply(404, error("User not found")));
+        }
+        return new Auth(user);
+    }
+
+    private Reply authorized(User user) {
+        var refreshToken = UUID.randomUUID().toString().replace("-", "")
+                + UUID.randomUUID().toString().replace("-", "");
+        refreshTokens.put(refreshToken, user.id);
+        return new Reply(200, new JSONObject().put("success", true)
+                .put("user", user.toJson())
+                .put("accessToken", "Bearer " + accessToken(user))
+                .put("refreshToken", refreshToken));
+    }
+
+    private String accessToken(User user) {
+        var encoder = Base64.getUrlEncoder().withoutPadding();
+        var now = Instant.now().getEpochSecond();
+        var header = encoder.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+        var payload = encoder.encodeToString(new JSONObject()
+                .put("id", user.id)
+                .put("iat", now)
+                .put("exp", now + ACCESS_TOKEN_TTL_SECONDS)
+                .toString().getBytes(StandardCharsets.UTF_8));
+        return header + "." + payload + "." + sign(header + "." + payload);
+    }
+
+    private String sign(String data) {
+        try {
+            var mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Strictly increasing, so that /api/orders/all is strictly sorted by updatedAt.
+     */
+    private String timestamp() {
+        return TIMESTAMP.format(Instant.ofEpochMilli(
+                lastTimestamp.accumulateAndGet(System.currentTimeMillis(), (prev, now) -> Math.max(prev + 1, now))));
+    }
+
+    private static String objectId() {
+        return UUID.randomUUID().toString().replace("-", "").substring(0, 24);
+    }
+
+    private static JSONObject error(String message) {
+        return new JSONObject().put("success", false).put("message", message);
+    }
+
+    private static JSONObject message(String message) {
+        return new JSONObject().put("success", true).put("message", message);
+    }
+
+    private void seedIngredients() {
+        ingredient("643d69a5c3f7b9001cfa093c", "Краторная булка N-200i", "bun", 80, 24, 53, 420, 1255, "bun-02");
+        ingredient("643d69a5c3f7b9001cfa093d", "Флюоресцентная булка R2-D3", "bun", 44, 26, 85, 643, 988, "bun-01");
+        ingredient("643d69a5c3f7b9001cfa0941", "Биокотлета из марсианской Магнолии", "main", 420, 142, 242, 4242, 424, "meat-01");
+        ingredient("643d69a5c3f7b9001cfa093e", "Филе Люминесцентного тетраодонтимформа", "main", 44, 26, 85, 643, 988, "meat-03");
+        ingredient("643d69a5c3f7b9001cfa0940", "Говяжий метеорит (отбивная)", "main", 800, 800, 300, 2674, 3000, "meat-04");
+        ingredient("643d69a5c3f7b9001cfa0947", "Плоды Фалленианского дерева", "main", 20, 5, 55, 77, 874, "sp_1");
+        ingredient("643d69a5c3f7b9001cfa0948", "Кристаллы марсианских альфа-сахаридов", "main", 234, 432, 111, 189, 762, "core");
+        ingredient("643d69a5c3f7b9001cfa0949", "Мини-салат Экзо-Плантаго", "main", 1, 2, 3, 6, 4400, "salad");
+        ingredient("643d69a5c3f7b9001cfa094a", "Сыр с астероидной плесенью", "main", 84, 48, 420, 3377, 4142, "cheese");
+        ingredient("643d69a5c3f7b9001cfa0942", "Соус Spicy-X", "sauce", 30, 20, 40, 30, 90, "sauce-02");
+        ingredient("643d69a5c3f7b9001cfa0943", "Соус фирменный Space Sauce", "sauce", 50, 22, 11, 14, 80, "sauce-04");
+        ingredient("643d69a5c3f7b9001cfa0944", "Соус традиционный галактический", "sauce", 42, 24, 42, 99, 15, "sauce-03");
+        ingredient("643d69a5c3f7b9001cfa0945", "Соус с шипами Антарианского плоскоходца", "sauce", 101, 99, 100, 100, 88, "sauce-01");
+    }
+
+    private void ingredient(String id, String name, String type, int proteins, int fat, int carbohydrates,
+                            int calories, int price, String image) {
+        ingredients.put(id, new Ingredient(id, name, type, proteins, fat, carbohydrates, calories, price,
+                "https://code.s3.yandex.net/react/code/" + image + ".png"));
+    }
+
+    private void seedOrders() {
+        var seed = new ArrayList<>(ingredients.values());
+        for (int i = 0; i < ALL_ORDERS_LIMIT; i++) {
+            var items = List.of(seed.get(i % 2), seed.get(2 + i % (seed.size() - 2)), seed.get(i % 2));
+            store(new Order(objectId(), orderNumber.incrementAndGet(), items, null, timestamp()));
+        }
+    }
+
+    static class Reply {
+        final int code;
+        final JSONObject body;
+        final String etag;
+
+        Reply(int code, JSONObject body) {
+            this(code, body, null);
+        }
+
+        Reply(int code, JSONObject body, String etag) {
+            this.code = code;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+
+    private static class Auth {
+        final User user;
+        final Reply reply;
+
+        Auth(User user) {
+            this.user = user;
+            this.reply = null;
+        }
+
+        Auth(Reply reply) {
+            this.user = null;
+            this.reply = reply;
+        }
+    }
+
+    private static class User {
+        final String id;
+        final String createdAt;
+        final List<Order> orders = new ArrayList<>();
+        volatile String email;
+        volatile String name;
+        volatile String password;
+        volatile String updatedAt;
+
+        User(String id, String email, String name, String password, String createdAt) {
+            this.id = id;
+            this.email = email;
+            this.name = name;
+            this.password = password;
+            this.createdAt = createdAt;
+            this.updatedAt = createdAt;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject().put("email", email).put("name", name);
+        }
+    }
+
+    private static class Ingredient {
+        final String id;
+        final String name;
+        final String type;
+        final int proteins;
+        final int fat;
+        final int carbohydrates;
+        final int calories;
+        final int price;
+        final String image;
+
+        Ingredient(String id, String name, String type, int proteins, int fat, int carbohydrates,
+                   int calories, int price, String image) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.proteins = proteins;
+            this.fat = fat;
+            this.carbohydrates = carbohydrates;
+            this.calories = calories;
+            this.price = price;
+            this.image = image;
+        }
+
+        JSONObject toJson() {
+            return new JSONObject()
+                    .put("_id", id)
+                    .put("name", name)
+                    .put("type", type)
+                    .put("proteins", proteins)
+                    .put("fat", fat)
+                    .put("carbohydrates", carbohydrates)
+                    .put("calories", calories)
+                    .put("price", price)
+                    .put("image", image)
+                    .put("image_mobile", image.replace(".png", "-mobile.png"))
+                    .put("image_large", image.replace(".png", "-large.png"))
+                    .put("__v", 0);
+        }
+    }
+
+    private static class Order {
+        final String id;
+        final int number;
+        final List<Ingredient> ingredients;
+        final User owner;
+        final String name;
+        final String createdAt;
+        final int price;
+
+        Order(String id, int number, List<Ingredient> ingredients, User owner, String createdAt) {
+            this.id = id;
+            this.number = number;
+            this.ingredients = ingredients;
+            this.owner = owner;
+            this.createdAt = createdAt;
+            this.price = ingredients.stream().mapToInt(i -> i.price).sum();
+            this.name = ingredients.get(0).name.split(" ")[0] + " бургер";
+        }
+
+        JSONObject toShortJson() {
+            var ids = new JSONArray();
+            ingredients.forEach(i -> ids.put(i.id));
+            return new JSONObject()
+                    .put("_id", id)
+                    .put("ingredients", ids)
+                    .put("status", "done")
+                    .put("name", name)
+                    .put("createdAt", createdAt)
+                    .put("updatedAt", createdAt)
+                    .put("number", number);
+        }
+
+        JSONObject toFullJson() {
+            var items = new JSONArray();
+            ingredients.forEach(i -> items.put(i.toJson()));
+            var json = new JSONObject()
+                    .put("_id", id)
+                    .put("ingredients", items)
+                    .put("status", "done")
+                    .put("name", name)
+                    .put("createdAt", createdAt)
+                    .put("updatedAt", createdAt)
+                    .put("number", number)
+                    .put("price", price);
+            if (owner != null) {
+                json.put("owner", owner.toJson()
+                        .put("createdAt", owner.createdAt)
+                        .put("updatedAt", owner.updatedAt));
+            }
+            return json;
+        }
+    }
+}
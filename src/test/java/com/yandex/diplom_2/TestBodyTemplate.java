@@ -0,0 +1,34 @@
+package com.yandex.diplom_2;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestBodyTemplate {
+
+    @Test
+    public void testStringsEncodeLikeStringGetBytes() throws CharacterCodingException {
+        var values = List.of("plain", "quote \" and backslash \\", "tab\tnew line\ncontrol \u0001",
+                "кириллица", "€ and 中文", "emoji 🍔", "lone high \uD83C", "lone high \uD83Cx",
+                "lone low \uDF54", "swapped \uDF54\uD83C", "");
+        for (var value : values) {
+            var body = BodyTemplate.TOKEN.fill(value);
+            //throws on malformed UTF-8, such as a surrogate written as three bytes
+            var json = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(body)).toString();
+            var expected = new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+            assertThat(value, new JSONObject(json).getString("token"), equalTo(expected));
+        }
+    }
+
+    @Test
+    public void testTokenBodyLeavesOutMissingToken() {
+        assertThat(new String(BodyTemplate.token(null), StandardCharsets.UTF_8), equalTo("{}"));
+        assertThat(new String(BodyTemplate.token("t"), StandardCharsets.UTF_8), equalTo("{\"token\":\"t\"}"));
+    }
+}
@@ -1,15 +1,12 @@
 package com.yandex.diplom_2;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeFormatterBuilder;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import org.json.JSONObject;
 import org.junit.Test;
 
-import static com.yandex.diplom_2.TestUser.createUserBody;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
@@ -17,47 +14,26 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
-import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
-import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.oneOf;
+import static org.junit.Assume.assumeThat;
 
 public class TestOrder extends BaseTest {
 
     @Test
     public void testOrdersAll() {
         var orders = tryOrdersGetAll();
-        assertResponse(orders, OK_200,
-                "success", equalTo(true),
-                "orders.owner", everyItem(nullValue()),
-                "orders.price", everyItem(nullValue()),
-                "orders.ingredients", everyItem(not(empty())),
-                "orders.number", everyItem(greaterThan(0)),
-                "orders.status", everyItem(oneOf("done",
-                        //todo: proper naming of following statuses is not provided in API documentation
-                        "preparing", "cancelled")),
-                "total", greaterThan(0),
-        "totalToday", notNullValue());
+        assertResponse(orders, OK_200);
 
-        //check sort orders are sorted by updatedAt
-        List<Map<String, String>> ordersList = orders.jsonPath().getList("orders");
-        var formatter = new DateTimeFormatterBuilder()
-                .append(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                .optionalStart().appendOffset("+HH:MM", "+00:00").optionalEnd()
-                .optionalStart().appendOffset("+HHMM", "+0000").optionalEnd()
-                .optionalStart().appendOffset("+HH", "Z").optionalEnd()
-                .toFormatter();
-        var prev = LocalDateTime.MAX;
-        for (var order: ordersList) {
-            var current = LocalDateTime.parse(order.get("updatedAt"), formatter);
-            assertThat(current.isBefore(prev), equalTo(true));
-            prev = current;
-        }
+        //single streaming pass, also checks that orders are sorted by updatedAt
+        var feed = OrdersFeedValidator.validate(orders.asInputStream());
+        assertThat(feed.violations(), empty());
+        assertThat(feed.orders(), greaterThan(0L));
     }
 
     @Test
     public void testOrdersNewUserForNew() {
-        var created = tryUserCreate(createUserBody);
+        var created = tryUserCreate(UserIdentity.next().toJson());
         try {
             var orders = tryOrdersGet(created.then().extract().path("accessToken"));
             assertResponse(orders, OK_200, "orders", empty(),
@@ -87,17 +63,17 @@ public class TestOrder extends BaseTest {
 
     @Test
     public void testOrderCreateWithInvalidData() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var burger = tryOrderCreate(null, created.then().extract().path("accessToken"));
+            var burger = tryOrderCreate(null, user.accessToken());
             assertResponse(burger, BAD_REQUEST_400, "success", equalTo(false),
                     "message", equalTo("Ingredient ids must be provided"));
 
-            burger = tryOrderCreate(new JSONObject().put("ingredients", List.of()), created.then().extract().path("accessToken"));
+            burger = tryOrderCreate(new JSONObject().put("ingredients", List.of()), user.accessToken());
             assertResponse(burger, BAD_REQUEST_400, "success", equalTo(false),
                     "message", equalTo("Ingredient ids must be provided"));
 
-            burger = tryOrderCreate(new JSONObject().put("ingredients", List.of("i'm not a hash")), created.then().extract().path("accessToken"));
+            burger = tryOrderCreate(new JSONObject().put("ingredients", List.of("i'm not a hash")), user.accessToken());
             assertResponse(burger, ERR_500);
 
             burger = tryOrderCreate(new JSONObject().put("ingredients", List.of()), "i'm not a token");
@@ -107,7 +83,7 @@ public class TestOrder extends BaseTest {
             assertResponse(burger, BAD_REQUEST_403, "message", equalTo("jwt expired"), "success", equalTo(false));
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
@@ -129,87 +105,104 @@ public class TestOrder extends BaseTest {
 
     @Test
     public void testOrderCreate() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var ingredients = tryGetIngredients();
-            List<String> ingredientIds = ingredients.jsonPath().getList("data._id");
+            var ingredientIds = IngredientCatalog.get().ids();
 
             var singleIngredient = List.of(ingredientIds.get(0));
             var burgerSingleIngredient = tryOrderCreate(new JSONObject()
-                    .put("ingredients", singleIngredient), created.then().extract().path("accessToken"));
+                    .put("ingredients", singleIngredient), user.accessToken());
 
             assertResponse(burgerSingleIngredient, OK_200, "success", equalTo(true),
                     "name", notNullValue(),
-                    "order.owner.email", equalTo(USER_EMAIL),
+                    "order.owner.email", equalTo(user.identity.email),
                     "order.price", greaterThan(0),
                     "order.ingredients._id", hasSize(singleIngredient.size()),
                     "order.ingredients._id", containsInAnyOrder(singleIngredient.toArray()));
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
     @Test
-    public void testOrderCreateOnlyBuns() {
-        var created = tryUserCreate(createUserBody);
+    public void testOrderCreateLatency() {
+        var user = UserPool.shared().lease();
         try {
-            var ingredients = tryGetIngredients();
-            assertResponse(ingredients, OK_200, "success", equalTo(true), "data", notNullValue());
-            List<Map<String, String>> ingredientIds = ingredients.jsonPath().getList("data");
+            var burger = new JSONObject().put("ingredients", IngredientCatalog.get().randomBurger());
+            assertLatencyPercentile("POST /api/orders", OK_200, () -> tryOrderCreate(burger, user.accessToken()));
+        }
+        finally {
+            UserPool.shared().release(user);
+        }
+    }
+
+    @Test
+    public void testOrderCreateAsync() {
+        var client = AsyncApiClient.forConfiguredTarget();
+        var user = UserIdentity.next();
+        var burger = IngredientCatalog.get().randomBurger();
+        var listed = client.register(user.toJson())
+                .thenCompose(created -> {
+                    String token = created.path("accessToken");
+                    return client.orderCreate(BodyTemplate.ORDER, token, burger)
+                            .thenCompose(order -> client.orders(token)
+                                    .thenApply(list -> Objects.equals(list.path("orders.0.number"), order.path("order.number"))))
+                            //the user is deleted either way, a failure before that is passed on once it is gone
+                            .handle((matches, failure) -> client.userDelete(token)
+                                    .thenCompose(deleted -> failure == null ? CompletableFuture.completedFuture(matches)
+                                            : CompletableFuture.<Boolean>failedFuture(failure)))
+                            .thenCompose(Function.identity());
+                })
+                .join();
+        assertThat("the order is listed for its owner", listed, equalTo(true));
+    }
 
-            var onlyBuns = ingredientIds.stream()
-                    .filter(h -> "bun".equals(h.get("type")))
-                    .map(h -> h.get("_id"))
-                    .collect(Collectors.toList());
+    @Test
+    public void testOrderCreateOnlyBuns() {
+        var user = UserPool.shared().lease();
+        try {
+            var onlyBuns = IngredientCatalog.get().ofType(IngredientCatalog.BUN);
             var burgerSingleIngredient = tryOrderCreate(new JSONObject()
-                    .put("ingredients", onlyBuns), created.then().extract().path("accessToken"));
+                    .put("ingredients", onlyBuns), user.accessToken());
 
             assertResponse(burgerSingleIngredient, OK_200, "success", equalTo(true),
                     "name", notNullValue(),
-                    "order.owner.email", equalTo(USER_EMAIL),
+                    "order.owner.email", equalTo(user.identity.email),
                     "order.price", greaterThan(0),
                     "order.ingredients._id", hasSize(onlyBuns.size()),
                     "order.ingredients._id", containsInAnyOrder(onlyBuns.toArray()));
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
     @Test
     public void testOrderCreateOnlySalsas() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var ingredients = tryGetIngredients();
-            assertResponse(ingredients, OK_200, "success", equalTo(true), "data", notNullValue());
-            List<Map<String, String>> ingredientIds = ingredients.jsonPath().getList("data");
-
-            var onlySalsas = ingredientIds.stream()
-                    .filter(h -> "sauce".equals(h.get("type")))
-                    .map(h -> h.get("_id"))
-                    .collect(Collectors.toList());
+            var onlySalsas = IngredientCatalog.get().ofType(IngredientCatalog.SAUCE);
             var burgerSingleIngredient = tryOrderCreate(new JSONObject()
-                    .put("ingredients", onlySalsas), created.then().extract().path("accessToken"));
+                    .put("ingredients", onlySalsas), user.accessToken());
 
             assertResponse(burgerSingleIngredient, OK_200, "success", equalTo(true),
                     "name", notNullValue(),
-                    "order.owner.email", equalTo(USER_EMAIL),
+                    "order.owner.email", equalTo(user.identity.email),
                     "order.price", greaterThan(0),
                     "order.ingredients._id", hasSize(onlySalsas.size()),
                     "order.ingredients._id", containsInAnyOrder(onlySalsas.toArray()));
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
     @Test
     public void testOrderCreateWithInvalidIngredients() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var ingredients = tryGetIngredients();
-            List<String> ingredientIds = ingredients.jsonPath().getList("data._id");
+            var ingredientIds = IngredientCatalog.get().ids();
 
             /*
             try to send trash like
@@ -230,26 +223,25 @@ public class TestOrder extends BaseTest {
                             ingredientIds.get(0),
                             List.of(ingredientIds.get(0)),
                             List.of(ingredientIds.get(0))
-                    )), created.then().extract().path("accessToken"));
+                    )), user.accessToken());
 
             assertResponse(burgerSingleIngredient, BAD_REQUEST_403);
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
     @Test
     public void testOrderCreateIncCounter() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var initialStats = tryOrdersGet(created.then().extract().path("accessToken"));
-            var ingredients = tryGetIngredients();
-            List<String> ingredientIds = ingredients.jsonPath().getList("data._id");
-            var burger = tryOrderCreate(new JSONObject().put("ingredients", List.of(ingredientIds.get(0))), created.then().extract().path("accessToken"));
+            var initialStats = tryOrdersGet(user.accessToken());
+            var ingredientIds = IngredientCatalog.get().ids();
+            var burger = tryOrderCreate(new JSONObject().put("ingredients", List.of(ingredientIds.get(0))), user.accessToken());
             assertResponse(burger, OK_200);
 
-            var newStats = tryOrdersGet(created.then().extract().path("accessToken"));
+            var newStats = tryOrdersGet(user.accessToken());
             assertResponse(newStats, OK_200,
                     //ignoring case when test are running at midnight
                     "totalToday", greaterThan(initialStats.then().extract().path("totalToday")),
@@ -257,7 +249,20 @@ public class TestOrder extends BaseTest {
 
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
+
+    /**
+     * The concurrent version of {@link #testOrderCreateIncCounter()}, other test classes order at the
+     * same time, so the feed counters are only checked for going down and for lost updates.
+     * It creates 20 orders and keeps polling the counters, so it only runs against the stand-in;
+     * use {@link OrderCounterChecker} directly for another target.
+     */
+    @Test
+    public void testOrderCountersConcurrent() throws InterruptedException {
+        assumeThat("runs against the stand-in only", System.getProperty(TARGET_PROPERTY, "local"), equalTo("local"));
+        var result = new OrderCounterChecker(4, 5, 4, false).run();
+        assertThat(result.report(), result.violations(), empty());
+    }
 }
@@ -0,0 +1,25 @@
+package com.yandex.diplom_2;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestOrdersFeedValidator {
+    private static final String ORDER = "{\"ingredients\":[\"a\"],\"number\":%d,\"status\":\"done\","
+            + "\"updatedAt\":\"2024-05-0%dT10:00:00.000Z\"}";
+
+    @Test
+    public void testNonObjectOrderIsReportedAndSkipped() {
+        var body = "{\"success\":true,\"orders\":[" + String.format(ORDER, 2, 2) + ",42,[1,{\"x\":1}],null,"
+                + String.format(ORDER, 1, 1) + "],\"total\":0,\"totalToday\":1}";
+        var feed = OrdersFeedValidator.validate(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        assertThat(feed.orders(), equalTo(2L));
+        //total is still read after the array, so its own violation shows up
+        assertThat(feed.violations(), contains("orders[1] is not an object", "orders[2] is not an object",
+                "orders[3] is not an object", "total is not greater than 0"));
+    }
+}
@@ -0,0 +1,54 @@
+package com.yandex.diplom_2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TestShardPlanner {
+
+    @Test
+    public void testEveryTestLandsInExactlyOneShard() {
+        var random = new Random(42);
+        var tests = new ArrayList<String>();
+        var history = new JSONObject();
+        for (int i = 0; i < 40; i++) {
+            var test = "com.example.Test" + i % 7 + "#test" + i;
+            tests.add(test);
+            //some without history, some with equal durations to exercise the tie breaks
+            if (i % 3 != 0) {
+                history.put(test, new JSONObject().put("millis", (double) (random.nextInt(5) * 100)).put("lastStop", 0L));
+            }
+        }
+        for (var count : List.of(1, 2, 3, 7, 50)) {
+            var seen = new HashMap<String, Integer>();
+            var planned = new ArrayList<String>();
+            for (var shard : ShardPlanner.plan(tests, history, count)) {
+                shard.tests.forEach(test -> seen.merge(test, 1, Integer::sum));
+                planned.addAll(shard.tests);
+            }
+            assertThat("shards for count " + count, planned, containsInAnyOrder(tests.toArray()));
+            seen.forEach((test, times) -> assertThat(test + " with count " + count, times, equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testPlanDoesNotDependOnTestOrder() {
+        var tests = new ArrayList<>(List.of("A#a", "A#b", "B#a", "B#b", "C#a"));
+        var history = new JSONObject().put("A#a", new JSONObject().put("millis", 300.0).put("lastStop", 0L))
+                .put("B#b", new JSONObject().put("millis", 300.0).put("lastStop", 0L));
+        var first = ShardPlanner.plan(tests, history, 2);
+        Collections.reverse(tests);
+        var second = ShardPlanner.plan(tests, history, 2);
+        for (int i = 0; i < 2; i++) {
+            assertThat(second.get(i).tests, equalTo(first.get(i).tests));
+        }
+    }
+}
@@ -1,51 +1,49 @@
 package com.yandex.diplom_2;
 
-import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 import org.json.JSONObject;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 
 public class TestUser extends BaseTest {
 
-    public static final JSONObject createUserBody = new JSONObject()
-            .put("email", USER_EMAIL)
-            .put("name", USER_NAME)
-            .put("password", USER_PASSWORD);
-
     @Test
     public void testCreateUserWithSameEmail() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var failed = tryUserCreate(createUserBody);
+            var failed = tryUserCreate(user.identity.toJson());
             assertResponseWithCodeAndMessage(failed, BAD_REQUEST_403, "User already exists", false);
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
     @Test
     public void testNotExistingUserLogin() {
-         var notExists = tryUserLogin(new JSONObject().put("email", USER_EMAIL).put("password", USER_PASSWORD));
+         var notExists = tryUserLogin(UserIdentity.next().credentials());
          assertResponse(notExists, UNAUTHORIZED_401, "message", equalTo("email or password are incorrect"), "success", equalTo(false));
     }
 
     @Test
     public void testUserLoginLogout() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
             var failed1 = tryUserLogin(null);
             assertResponseWithCodeAndMessage(failed1, UNAUTHORIZED_401, "email or password are incorrect", false);
 
-            var failed2 = tryUserLogin(new JSONObject().put("email", USER_EMAIL));
+            var failed2 = tryUserLogin(new JSONObject().put("email", user.identity.email));
             assertResponseWithCodeAndMessage(failed2, UNAUTHORIZED_401, "email or password are incorrect", false);
 
-            var failed3 = tryUserLogin(new JSONObject().put("password", USER_PASSWORD));
+            var failed3 = tryUserLogin(new JSONObject().put("password", user.identity.password));
             assertResponseWithCodeAndMessage(failed3, UNAUTHORIZED_401, "email or password are incorrect", false);
 
-            var ok = tryUserLogin(new JSONObject().put("email", USER_EMAIL).put("password", USER_PASSWORD));
+            var ok = tryUserLogin(user.identity.credentials());
             assertResponse(ok, OK_200, "accessToken", notNullValue(),
                     "refreshToken", notNullValue(),
                     "user", notNullValue(),
@@ -61,21 +59,51 @@ public class TestUser extends BaseTest {
             assertResponseWithCodeAndMessage(logout, OK_200, "Successful logout", true);
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
+        }
+    }
+
+    @Test
+    public void testExchangeLogShowsTemplatedBody() {
+        var logout = tryUserLogout("not-a-refresh-token");
+        assertResponseWithCodeAndMessage(logout, NOT_FOUND_404, "Token required", false);
+
+        var log = ExchangeLogFilter.format("testExchangeLogShowsTemplatedBody");
+        assertThat(log, containsString("{\"token\":\"not-a-refresh-token\"}"));
+        assertThat(log, not(containsString("[B@")));
+    }
+
+    @Test
+    public void testTokenRefresh() {
+        var created = tryUserCreate(UserIdentity.next().toJson());
+        var tokens = new TokenManager(TimeUnit.DAYS.toMillis(1));
+        try {
+            tokens.register("user", created.then().extract().path("accessToken"), created.then().extract().path("refreshToken"));
+            var refreshed = tokens.accessToken("user");
+            assertThat(tokens.refreshCount(), equalTo(1L));
+
+            var info = tryUserGetInfo(refreshed);
+            assertResponse(info, OK_200, "success", equalTo(true));
+
+            var failed = tryTokenRefresh("not a token");
+            assertResponseWithCodeAndMessage(failed, UNAUTHORIZED_401, "Token is invalid", false);
+        }
+        finally {
+            tryUserDelete(tokens.accessToken("user"));
         }
     }
 
     @Test
     public void testUserInfo() {
-        var created = tryUserCreate(createUserBody);
+        var user = UserPool.shared().lease();
         try {
-            var info = tryUserGetInfo(created.then().extract().path("accessToken"));
-            assertResponse(info, OK_200, "user.name", equalTo(USER_NAME),
-                    "user.email", equalTo(USER_EMAIL),
+            var info = tryUserGetInfo(user.accessToken());
+            assertResponse(info, OK_200, "user.name", equalTo(user.identity.name),
+                    "user.email", equalTo(user.identity.email),
                     "success", equalTo(true));
         }
         finally {
-            tryUserDelete(created.then().extract().path("accessToken"));
+            UserPool.shared().release(user);
         }
     }
 
@@ -91,10 +119,10 @@ public class TestUser extends BaseTest {
 
     @Test
     public void testUserInfoUpdate() {
-        var created = tryUserCreate(createUserBody);
+        var created = tryUserCreate(UserIdentity.next().toJson());
         try {
             var newName = "test-name";
-            var newEmail = "testemail" + Instant.now().getEpochSecond() + "@ya.ru";
+            var newEmail = UserIdentity.next().email;
             var info = tryUserUpdate(new JSONObject()
                     .put("name", newName)
                     .put("email", newEmail), created.then().extract().path("accessToken"));
@@ -110,7 +138,7 @@ public class TestUser extends BaseTest {
     @Test
     public void testUserInfoUpdateAnon() {
         var newName = "test-name";
-        var newEmail = "testemail" + Instant.now().getEpochSecond() + "@ya.ru";
+        var newEmail = UserIdentity.next().email;
         var info = tryUserUpdate(new JSONObject()
                 .put("name", newName)
                 .put("email", newEmail), "asdadads");
@@ -120,19 +148,19 @@ public class TestUser extends BaseTest {
 
     @Test
     public void testUserInfoUpdateExistingEmail() {
-        var created1 = tryUserCreate(createUserBody);
-        var created2 = tryUserCreate(new JSONObject(createUserBody.toString()).put("email", "testemail" + Instant.now().getEpochSecond() + "@ya.ru"));
+        var user1 = UserPool.shared().lease();
+        var created2 = tryUserCreate(UserIdentity.next().toJson());
         try {
             var newName = "test-name";
             var info = tryUserUpdate(new JSONObject()
                     .put("name", newName)
-                    .put("email", USER_EMAIL), created2.then().extract().path("accessToken"));
+                    .put("email", user1.identity.email), created2.then().extract().path("accessToken"));
             assertResponse(info, BAD_REQUEST_403,
                     "message", equalTo("User with such email already exists"),
                     "success", equalTo(false));
         }
         finally {
-            tryUserDelete(created1.then().extract().path("accessToken"));
+            UserPool.shared().release(user1);
             tryUserDelete(created2.then().extract().path("accessToken"));
         }
     }
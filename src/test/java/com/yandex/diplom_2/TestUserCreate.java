@@ -15,12 +15,13 @@ import static org.hamcrest.Matchers.equalTo;
 public class TestUserCreate extends BaseTest {
     @Parameterized.Parameters
     public static Collection<Object> data() {
+        var user = UserIdentity.next();
         return Arrays.asList(new Object[][] {
-                {USER_NAME, USER_EMAIL, USER_PASSWORD, true, OK_200, null},
-                {null, USER_EMAIL, USER_PASSWORD, false, BAD_REQUEST_403, "Email, password and name are required fields"},
-                {USER_NAME, null, USER_PASSWORD, false, BAD_REQUEST_403, "Email, password and name are required fields"},
-                {USER_NAME, USER_EMAIL, null, false, BAD_REQUEST_403, "Email, password and name are required fields"},
-                {USER_NAME, "not_email", USER_PASSWORD, false, ERR_500, null},
+                {user.name, user.email, user.password, true, OK_200, null},
+                {null, user.email, user.password, false, BAD_REQUEST_403, "Email, password and name are required fields"},
+                {user.name, null, user.password, false, BAD_REQUEST_403, "Email, password and name are required fields"},
+                {user.name, user.email, null, false, BAD_REQUEST_403, "Email, password and name are required fields"},
+                {user.name, "not_email", user.password, false, ERR_500, null},
         });
     }
 
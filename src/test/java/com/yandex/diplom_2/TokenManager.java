@@ -0,0 +1,121 @@
+package com.yandex.diplom_2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.json.JSONObject;
+
+/**
+ * Caches access and refresh tokens per identity and renews them through {@code /api/auth/token}
+ * shortly before the access token expires, instead of logging in again.
+ * The JWT {@code exp} claim is decoded once per token. {@code token.refreshMargin} (seconds,
+ * default 60) sets how early the refresh happens. Refreshes are single-flight per identity:
+ * threads that ask while one is running wait for it and reuse its result.
+ */
+public class TokenManager {
+    private static final TokenManager SHARED = new TokenManager(
+            TimeUnit.SECONDS.toMillis(Long.getLong("token.refreshMargin", 60)));
+
+    private final BaseTest api = new BaseTest();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder refreshes = new LongAdder();
+    private final long marginMillis;
+
+    public TokenManager(long marginMillis) {
+        this.marginMillis = marginMillis;
+    }
+
+    public static TokenManager shared() {
+        return SHARED;
+    }
+
+    /**
+     * Starts tracking the tokens returned by register, login or a previous refresh.
+     */
+    public void register(String key, String accessToken, String refreshToken) {
+        entries.put(key, new Entry(new Tokens(accessToken, refreshToken)));
+    }
+
+    public void forget(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * {@code Authorization} header value for the identity, refreshed first if it is about to expire.
+     */
+    public String accessToken(String key) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            throw new IllegalArgumentException("No tokens for " + key);
+        }
+        var tokens = entry.tokens;
+        if (System.currentTimeMillis() < tokens.expiresAtMillis - marginMillis) {
+            return tokens.accessToken;
+        }
+        return refresh(entry, tokens).accessToken;
+    }
+
+    public String refreshToken(String key) {
+        var entry = entries.get(key);
+        if (entry == null) {
+            throw new IllegalArgumentException("No tokens for " + key);
+        }
+        return entry.tokens.refreshToken;
+    }
+
+    public long refreshCount() {
+        return refreshes.sum();
+    }
+
+    private Tokens refresh(Entry entry, Tokens seen) {
+        synchronized (entry) {
+            if (entry.tokens != seen) {
+                return entry.tokens;
+            }
+            var response = api.tryTokenRefresh(seen.refreshToken);
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Token refresh failed: " + response.statusLine());
+            }
+            refreshes.increment();
+            entry.tokens = new Tokens(response.path("accessToken"), response.path("refreshToken"));
+            return entry.tokens;
+        }
+    }
+
+    /**
+     * Seconds since epoch from the {@code exp} claim, {@code Long.MAX_VALUE} when there is none.
+     */
+    static long expiresAt(String accessToken) {
+        var jwt = accessToken.startsWith("Bearer ") ? accessToken.substring(7) : accessToken;
+        var parts = jwt.split("\\.");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Not a JWT: " + accessToken);
+        }
+        var claims = new JSONObject(new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+        return claims.optLong("exp", Long.MAX_VALUE);
+    }
+
+    private static class Entry {
+        volatile Tokens tokens;
+
+        Entry(Tokens tokens) {
+            this.tokens = tokens;
+        }
+    }
+
+    private static class Tokens {
+        final String accessToken;
+        final String refreshToken;
+        final long expiresAtMillis;
+
+        Tokens(String accessToken, String refreshToken) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            var exp = expiresAt(accessToken);
+            this.expiresAtMillis = exp == Long.MAX_VALUE ? Long.MAX_VALUE : TimeUnit.SECONDS.toMillis(exp);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.yandex.diplom_2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recorded exchanges on disk, two append-only files next to each other:
+ * <ul>
+ * <li>{@code <base>.log} - {@code "SBTLOG02"}, then per exchange the record length, key, status,
+ * content type, {@code ETag}, body length and the raw body bytes;</li>
+ * <li>{@code <base>.idx} - {@code "SBTIDX02"}, then per exchange the key, status, content type, {@code ETag}
+ * and where its body starts in the log, so replay never reads a body before it is asked for.</li>
+ * </ul>
+ * Strings are {@link DataOutputStream#writeUTF(String) modified UTF-8}. A run cut short leaves
+ * at most a truncated last index entry, which {@link #open(Path)} ignores.
+ */
+public class TrafficLog implements AutoCloseable {
+    private static final byte[] LOG_MAGIC = "SBTLOG02".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INDEX_MAGIC = "SBTIDX02".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel log;
+    private final FileChannel index;
+    private long position;
+
+    /**
+     * Appends to the recording at {@code base}, creating it when there is none.
+     */
+    public TrafficLog(Path base) {
+        try {
+            if (base.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(base.toAbsolutePath().getParent());
+            }
+            log = FileChannel.open(logFile(base), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            index = FileChannel.open(indexFile(base), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (log.size() == 0) {
+                log.write(ByteBuffer.wrap(LOG_MAGIC));
+                index.write(ByteBuffer.wrap(INDEX_MAGIC));
+            }
+            position = log.size();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to open traffic log " + base, e);
+        }
+    }
+
+    public static Path logFile(Path base) {
+        return base.resolveSibling(base.getFileName() + ".log");
+    }
+
+    public static Path indexFile(Path base) {
+        return base.resolveSibling(base.getFileName() + ".idx");
+    }
+
+    /**
+     * Appends one exchange; the log record goes first, so every indexed body is complete.
+     * A missing content type or {@code ETag} is stored as an empty string.
+     */
+    public synchronized void append(String key, int status, String contentType, String etag, byte[] body) {
+        try {
+            var header = new ByteArrayOutputStream(key.length() + 64);
+            var out = new DataOutputStream(header);
+            out.writeUTF(key);
+            out.writeShort(status);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeUTF(etag == null ? "" : etag);
+            out.writeInt(body.length);
+            var bodyOffset = position + Integer.BYTES + header.size();
+
+            var record = ByteBuffer.allocate(Integer.BYTES + header.size() + body.length);
+            record.putInt(header.size() + body.length).put(header.toByteArray()).put(body).flip();
+            while (record.hasRemaining()) {
+                position += log.write(record);
+            }
+
+            var entry = new ByteArrayOutputStream(key.length() + 32);
+            out = new DataOutputStream(entry);
+            out.writeUTF(key);
+            out.writeShort(status);
+            out.writeUTF(contentType == null ? "" : contentType);
+            out.writeUTF(etag == null ? "" : etag);
+            out.writeLong(bodyOffset);
+            out.writeInt(body.length);
+            var buffer = ByteBuffer.wrap(entry.toByteArray());
+            while (buffer.hasRemaining()) {
+                index.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            log.close();
+            index.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the index of the recording at {@code base} and maps its log read-only.
+     */
+    public static Recording open(Path base) {
+        var entries = new LinkedHashMap<String, List<Entry>>();
+        try (var in = new DataInputStream(Files.newInputStream(indexFile(base)));
+             var channel = FileChannel.open(logFile(base), StandardOpenOption.READ)) {
+            if (!Arrays.equals(in.readNBytes(INDEX_MAGIC.length), INDEX_MAGIC)) {
+                throw new IllegalStateException(indexFile(base) + " is not a traffic index");
+            }
+            var mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            var magic = new byte[LOG_MAGIC.length];
+            mapped.get(magic);
+            if (!Arrays.equals(magic, LOG_MAGIC)) {
+                throw new IllegalStateException(logFile(base) + " is not a traffic log");
+            }
+            while (true) {
+                Entry entry;
+                try {
+                    var key = in.readUTF();
+                    entry = new Entry(in.readUnsignedShort(), in.readUTF(), in.readUTF(), in.readLong(), in.readInt());
+                    entries.computeIfAbsent(key, k -> new ArrayList<>()).add(entry);
+                }
+                catch (EOFException e) {
+                    break;
+                }
+            }
+            return new Recording(entries, mapped);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to read traffic log " + base, e);
+        }
+    }
+
+    /**
+     * Recorded bodies stay in the mapped log, an entry only knows where its body is.
+     */
+    public static class Recording {
+        private final Map<String, List<Entry>> entries;
+        private final MappedByteBuffer log;
+
+        Recording(Map<String, List<Entry>> entries, MappedByteBuffer log) {
+            this.entries = entries;
+            this.log = log;
+        }
+
+        /**
+         * Responses recorded for the key in recording order, empty when there are none.
+         */
+        public List<Entry> entries(String key) {
+            return entries.getOrDefault(key, List.of());
+        }
+
+        public Map<String, List<Entry>> entries() {
+            return entries;
+        }
+
+        /**
+         * A view of the body in the mapping, nothing is copied.
+         */
+        public ByteBuffer body(Entry entry) {
+            var view = log.duplicate();
+            view.limit((int) entry.offset + entry.length).position((int) entry.offset);
+            return view.slice();
+        }
+    }
+
+    public static class Entry {
+        public final int status;
+        public final String contentType;
+        public final String etag;
+        public final long offset;
+        public final int length;
+
+        Entry(int status, String contentType, String etag, long offset, int length) {
+            this.status = status;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
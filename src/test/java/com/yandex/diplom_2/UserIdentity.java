@@ -0,0 +1,50 @@
+package com.yandex.diplom_2;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * Unique user credentials, one per test, so that tests never compete for the same email.
+ * Emails embed a per-JVM run prefix and a sequence number, which keeps them unique
+ * across threads, surefire forks and repeated runs against the same host.
+ */
+public class UserIdentity {
+    private static final String RUN = Long.toString(System.currentTimeMillis(), 36)
+            + Long.toString(ProcessHandle.current().pid(), 36);
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    public final String name;
+    public final String email;
+    public final String password;
+
+    public UserIdentity(String name, String email, String password) {
+        this.name = name;
+        this.email = email;
+        this.password = password;
+    }
+
+    public static UserIdentity next() {
+        var name = "stellar" + RUN + "n" + SEQUENCE.incrementAndGet();
+        return new UserIdentity(name, name + "@ya.ru", UUID.randomUUID().toString().substring(0, 12));
+    }
+
+    /**
+     * Body for {@code /api/auth/register}.
+     */
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("email", email)
+                .put("name", name)
+                .put("password", password);
+    }
+
+    /**
+     * Body for {@code /api/auth/login}.
+     */
+    public JSONObject credentials() {
+        return new JSONObject()
+                .put("email", email)
+                .put("password", password);
+    }
+}
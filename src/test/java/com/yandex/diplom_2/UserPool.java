@@ -0,0 +1,138 @@
+package com.yandex.diplom_2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registered users shared by the tests that only need "some logged in user".
+ * {@code pool.size} users (default 8) are registered concurrently on first use,
+ * a lease beyond that registers one more. Every user the pool has ever registered
+ * is removed by a parallel teardown in {@link #closeShared()}, or when the JVM exits if nobody called it.
+ *
+ * <p>Tests that change the user itself, depend on it being fresh or check
+ * registration keep creating their own users.
+ */
+public class UserPool {
+    public static final int SIZE = Integer.getInteger("pool.size", 8);
+
+    private static volatile UserPool shared;
+    private static Thread teardown;
+
+    private final BaseTest api = new BaseTest();
+    private final LinkedBlockingQueue<PooledUser> idle = new LinkedBlockingQueue<>();
+    private final Set<PooledUser> registered = ConcurrentHashMap.newKeySet();
+
+    public UserPool(int size) {
+        var pool = Executors.newFixedThreadPool(Math.max(1, Math.min(size, 16)));
+        try {
+            var futures = new ArrayList<CompletableFuture<PooledUser>>();
+            for (int i = 0; i < size; i++) {
+                futures.add(CompletableFuture.supplyAsync(this::register, pool));
+            }
+            futures.forEach(f -> idle.add(f.join()));
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    public static UserPool shared() {
+        var pool = shared;
+        if (pool == null) {
+            synchronized (UserPool.class) {
+                pool = shared;
+                if (pool == null) {
+                    pool = shared = new UserPool(SIZE);
+                    teardown = new Thread(pool::deleteAll, "user-pool-teardown");
+                    Runtime.getRuntime().addShutdownHook(teardown);
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Deletes the users of the shared pool now, while the target still answers, instead of at JVM exit.
+     * The load tools call it through {@link StandInServer#stopInstance()} before the stand-in goes away.
+     */
+    public static void closeShared() {
+        UserPool pool;
+        synchronized (UserPool.class) {
+            pool = shared;
+            if (pool == null) {
+                return;
+            }
+            shared = null;
+            try {
+                Runtime.getRuntime().removeShutdownHook(teardown);
+            }
+            catch (IllegalStateException e) {
+                //already shutting down, the hook is running or about to
+                return;
+            }
+        }
+        pool.deleteAll();
+    }
+
+    /**
+     * Takes an idle user with a valid access token, registering a new one when none is idle.
+     */
+    public PooledUser lease() {
+        var user = idle.poll();
+        return user != null ? user : register();
+    }
+
+    public void release(PooledUser user) {
+        idle.add(user);
+    }
+
+    public int registeredCount() {
+        return registered.size();
+    }
+
+    /**
+     * Removes every user this pool has registered, leased or not.
+     */
+    public void deleteAll() {
+        var pool = Executors.newFixedThreadPool(Math.max(1, Math.min(registered.size(), 16)));
+        try {
+            List<CompletableFuture<?>> deletes = new ArrayList<>();
+            for (var user : registered) {
+                deletes.add(CompletableFuture.runAsync(() -> {
+                    api.tryUserDelete(user.accessToken());
+                    TokenManager.shared().forget(user.identity.email);
+                }, pool));
+            }
+            CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0])).join();
+            registered.clear();
+            idle.clear();
+        }
+        finally {
+            pool.shutdown();
+            try {
+                pool.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private PooledUser register() {
+        var identity = UserIdentity.next();
+        var response = api.tryUserCreate(identity.toJson());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unable to register pooled user: " + response.statusLine());
+        }
+        TokenManager.shared().register(identity.email, response.path("accessToken"), response.path("refreshToken"));
+        var user = new PooledUser(identity, TokenManager.shared());
+        registered.add(user);
+        return user;
+    }
+}